@@ -0,0 +1,79 @@
+package src;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Measures the heap allocated by each match of a run with the JVM's
+ * per-thread allocation counter, and fails the run if any match in the
+ * steady state allocated more than a given number of bytes. A match is in
+ * the steady state when the thread's MatchWorkspace had everything it
+ * needed for it already: the first match of each strategy in each seat on
+ * each thread, matches that needed a new or larger CycleDetector or
+ * MatchState, and every match with a Player that cannot be reset are
+ * counted separately and not checked.
+ *
+ * The JIT compiler allocates on the playing thread now and then, when it
+ * compiles or deoptimizes a method in the middle of a match, so a match that
+ * allocates nothing itself can still be charged a few kilobytes. The engine
+ * therefore plays a steady-state match that went over the limit once more,
+ * the same way, and only the second measurement counts (see retried()).
+ */
+final class AllocationCheck {
+    private static final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // The most bytes a steady-state match may allocate
+    final long limit;
+    private final LongAdder steady = new LongAdder(), steadyBytes = new LongAdder();
+    private final LongAdder other = new LongAdder(), otherBytes = new LongAdder();
+    private final LongAdder overLimit = new LongAdder(), retries = new LongAdder();
+    private final LongAccumulator worst = new LongAccumulator(Math::max, 0);
+
+    // Allows at most the given number of bytes per steady-state match.
+    AllocationCheck(long limit) {
+        if (!threads.isThreadAllocatedMemorySupported())
+            throw new UnsupportedOperationException("This JVM does not count the memory threads allocate");
+        threads.setThreadAllocatedMemoryEnabled(true);
+        this.limit = limit;
+    }
+
+    // The bytes the calling thread has allocated so far.
+    long allocated() {
+        return threads.getCurrentThreadAllocatedBytes();
+    }
+
+    // Counts a steady-state match that went over the limit and was played
+    // again.
+    void retried() {
+        retries.increment();
+    }
+
+    // Counts a match that allocated the given number of bytes.
+    void record(boolean steadyState, long bytes) {
+        if (steadyState) {
+            steady.increment();
+            steadyBytes.add(bytes);
+            worst.accumulate(bytes);
+            if (bytes > limit)
+                overLimit.increment();
+        } else {
+            other.increment();
+            otherBytes.add(bytes);
+        }
+    }
+
+    // Reports on standard error what the matches allocated, and throws if
+    // any steady-state match went over the limit.
+    void verify() {
+        long matches = steady.sum(), others = other.sum(), over = overLimit.sum();
+        System.err.printf("Allocation: %d steady-state matches, %.1f bytes each on average, %d at most,"
+                        + " %d over %d bytes after %d played again; %d other matches, %.1f bytes each on average%n",
+                matches, matches == 0 ? 0.0 : (double) steadyBytes.sum() / matches, worst.get(), over, limit,
+                retries.sum(), others, others == 0 ? 0.0 : (double) otherBytes.sum() / others);
+        if (over > 0)
+            throw new IllegalStateException(over + " of " + matches + " steady-state matches allocated more than "
+                    + limit + " bytes");
+    }
+}
@@ -0,0 +1,105 @@
+package src;
+
+import java.util.Arrays;
+
+/*
+ * A player's actions during a match packed one bit per round into long words,
+ * bit (round & 63) of words[round >>> 6] holding the action of that round.
+ * Since defection is 1, counting defections over a range of rounds is a
+ * Long.bitCount per word instead of a scan over an int[].
+ *
+ * Strategies reach the histories of a match through MatchContext.
+ */
+class BitHistory {
+    private long[] words;
+    private int size = 0;
+
+    BitHistory(int capacity) {
+        words = new long[(capacity + 63) >>> 6];
+    }
+
+    // Empties the history for a match of the given number of rounds, and
+    // returns false if it had to grow to hold them.
+    boolean restart(int capacity) {
+        Arrays.fill(words, 0, (size + 63) >>> 6, 0);
+        size = 0;
+        if (words.length >= (capacity + 63) >>> 6)
+            return true;
+        words = new long[(capacity + 63) >>> 6];
+        return false;
+    }
+
+    void append(int action) {
+        if (action != 0)
+            words[size >>> 6] |= 1L << size;
+        size++;
+    }
+
+    // Number of rounds recorded so far.
+    int size() {
+        return size;
+    }
+
+    // The action played in the given round.
+    int get(int round) {
+        return (int) (words[round >>> 6] >>> round) & 1;
+    }
+
+    // Number of defections in rounds [from, to).
+    int defections(int from, int to) {
+        if (from >= to)
+            return 0;
+        int first = from >>> 6, last = (to - 1) >>> 6;
+        long head = -1L << from, tail = -1L >>> (-to & 63);
+        if (first == last)
+            return Long.bitCount(words[first] & head & tail);
+        int count = Long.bitCount(words[first] & head) + Long.bitCount(words[last] & tail);
+        for (int w = first + 1; w < last; w++)
+            count += Long.bitCount(words[w]);
+        return count;
+    }
+
+    // Number of defections over the whole history.
+    int defections() {
+        return defections(0, size);
+    }
+
+    // Number of cooperations in rounds [from, to).
+    int cooperations(int from, int to) {
+        return from >= to ? 0 : (to - from) - defections(from, to);
+    }
+
+    // True if the player defected in any round from the given one onwards.
+    boolean anyDefectionSince(int from) {
+        if (from >= size)
+            return false;
+        int first = from >>> 6, last = (size - 1) >>> 6;
+        if ((words[first] & (-1L << from)) != 0)
+            return true;
+        for (int w = first + 1; w <= last; w++)
+            if (words[w] != 0)
+                return true;
+        return false;
+    }
+
+    // The actions of rounds [from, to), at most 64 of them, packed so that bit
+    // j holds the action of round from + j.
+    long pattern(int from, int to) {
+        int length = to - from;
+        if (length <= 0)
+            return 0;
+        if (length > 64)
+            throw new IllegalArgumentException("A pattern holds at most 64 rounds");
+        int w = from >>> 6, shift = from & 63;
+        long bits = words[w] >>> shift;
+        if (shift != 0 && shift + length > 64)
+            bits |= words[w + 1] << (64 - shift);
+        return length == 64 ? bits : bits & ((1L << length) - 1);
+    }
+
+    // The last k actions packed as by pattern(), so bit k - 1 is the most
+    // recent round.
+    long lastK(int k) {
+        return pattern(size - k, size);
+    }
+}
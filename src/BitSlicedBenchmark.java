@@ -0,0 +1,124 @@
+package src;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/*
+ * Times BitSlicedEngine against the scalar scoresOfMatch on the same matches
+ * and checks that every score agrees exactly, with and without
+ * fast-forwarding. One more batch, untimed, is played at lengths above 65536
+ * rounds, which need counters of 17 bits.
+ *
+ * The roster is a set of random table strategies with memories between 0
+ * and the given maximum. Each match draws three of them and a length from
+ * the distribution used by runTournamentOnce, 90 + rint(20 * random). The
+ * scalar engine is timed with and without fast-forwarding.
+ *
+ *   java src.BitSlicedBenchmark [--memory k] [--strategies n] [--batches n] [--seed s]
+ */
+public class BitSlicedBenchmark {
+    public static void main(String[] args) {
+        int memory = 1, strategies = 1000, batches = 2000;
+        long seed = 1;
+        for (int a = 0; a < args.length; a++) {
+            if (args[a].equals("--memory"))
+                memory = Integer.parseInt(args[++a]);
+            else if (args[a].equals("--strategies"))
+                strategies = Integer.parseInt(args[++a]);
+            else if (args[a].equals("--batches"))
+                batches = Integer.parseInt(args[++a]);
+            else if (args[a].equals("--seed"))
+                seed = Long.parseLong(args[++a]);
+            else
+                throw new IllegalArgumentException("Unknown argument: " + args[a]);
+        }
+
+        Random random = new Random(seed);
+        TableStrategy[] roster = new TableStrategy[strategies];
+        for (int s = 0; s < strategies; s++) {
+            int own = random.nextInt(memory + 1);
+            byte[] opening = new byte[own], table = new byte[1 << (3 * own)];
+            for (int round = 0; round < own; round++)
+                opening[round] = (byte) random.nextInt(2);
+            for (int entry = 0; entry < table.length; entry++)
+                table[entry] = (byte) random.nextInt(2);
+            roster[s] = new TableStrategy("Random" + s, own, opening, table);
+        }
+
+        int lanes = BitSlicedEngine.LANES, matches = batches * lanes;
+        TableStrategy[][] seats = new TableStrategy[3][matches];
+        int[] rounds = new int[matches];
+        for (int m = 0; m < matches; m++) {
+            for (int seat = 0; seat < 3; seat++)
+                seats[seat][m] = roster[random.nextInt(strategies)];
+            rounds[m] = 90 + (int) Math.rint(20 * random.nextDouble());
+        }
+
+        TournamentEngine game = new TournamentEngine(new Roster(), CustomThreePrisonersDilemma.payoffs, true, false, false, null, false);
+        TournamentEngine plainGame = new TournamentEngine(new Roster(), CustomThreePrisonersDilemma.payoffs, false, false, false, null, false);
+        float[][] forwarded = new float[matches][], scalar = new float[matches][];
+        float[][] sliced = new float[matches][3];
+        BitSlicedEngine engine = new BitSlicedEngine(CustomThreePrisonersDilemma.payoffs, memory);
+
+        // The first pass of each only warms up the JIT
+        long fastForwarded = 0, plain = 0, bitSliced = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            long start = System.nanoTime();
+            for (int m = 0; m < matches; m++)
+                forwarded[m] = game.scoresOfMatch(seats[0][m].fresh(), seats[1][m].fresh(), seats[2][m].fresh(),
+                        rounds[m]);
+            fastForwarded = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int m = 0; m < matches; m++)
+                scalar[m] = plainGame.scoresOfMatch(seats[0][m].fresh(), seats[1][m].fresh(), seats[2][m].fresh(), rounds[m]);
+            plain = System.nanoTime() - start;
+
+            TableStrategy[] A = new TableStrategy[lanes], B = new TableStrategy[lanes], C = new TableStrategy[lanes];
+            int[] laneRounds = new int[lanes];
+            float[][] laneScores = new float[lanes][3];
+            start = System.nanoTime();
+            for (int first = 0; first < matches; first += lanes) {
+                System.arraycopy(seats[0], first, A, 0, lanes);
+                System.arraycopy(seats[1], first, B, 0, lanes);
+                System.arraycopy(seats[2], first, C, 0, lanes);
+                System.arraycopy(rounds, first, laneRounds, 0, lanes);
+                engine.play(A, B, C, laneRounds, laneScores);
+                for (int l = 0; l < lanes; l++)
+                    System.arraycopy(laneScores[l], 0, sliced[first + l], 0, 3);
+            }
+            bitSliced = System.nanoTime() - start;
+        }
+
+        int mismatches = 0;
+        for (int m = 0; m < matches; m++)
+            if (!Arrays.equals(scalar[m], sliced[m]) || !Arrays.equals(forwarded[m], sliced[m]))
+                mismatches++;
+
+        TableStrategy[][] lane = new TableStrategy[3][lanes];
+        int[] laneRounds = new int[lanes];
+        float[][] laneScores = new float[lanes][3];
+        for (int l = 0; l < lanes; l++) {
+            for (int seat = 0; seat < 3; seat++)
+                lane[seat][l] = roster[random.nextInt(strategies)];
+            laneRounds[l] = 65536 + random.nextInt(1000);
+        }
+        engine.play(lane[0], lane[1], lane[2], laneRounds, laneScores);
+        for (int l = 0; l < lanes; l++)
+            if (!Arrays.equals(laneScores[l], game.scoresOfMatch(lane[0][l].fresh(), lane[1][l].fresh(),
+                    lane[2][l].fresh(), laneRounds[l])))
+                mismatches++;
+
+        System.out.println(matches + " matches of " + strategies + " random table strategies with memory up to " + memory);
+        report("scalar scoresOfMatch", plain, matches, plain);
+        report("scalar scoresOfMatch, fast-forward", fastForwarded, matches, plain);
+        report("bit-sliced, 64 lanes", bitSliced, matches, plain);
+        System.out.println("Mismatched scores: " + mismatches + " of " + (matches + lanes) + " matches");
+        if (mismatches != 0)
+            System.exit(1);
+    }
+
+    static void report(String what, long nanos, int matches, long baseline) {
+        System.out.printf("%-36s %8.1f ns/match  %6.2fx%n", what, (double) nanos / matches, (double) baseline / nanos);
+    }
+}
@@ -0,0 +1,207 @@
+package src;
+
+import java.util.Arrays;
+
+/*
+ * Plays up to 64 matches between table strategies at once, one per bit of a
+ * long. Every value the scalar engine keeps per match is kept here as a
+ * "slice": a long whose bit l is that value's bit in lane l. So the actions
+ * of a round are three longs, the history is 3k of them, and a round of all
+ * 64 matches costs a fixed number of bitwise operations:
+ *
+ *   - each seat's action is its transposed table (entry e of every lane's
+ *     table in one long) reduced through a tree of multiplexers, one level
+ *     per bit of the recent-outcome index;
+ *   - the eight outcome counts are bit-sliced binary counters, incremented
+ *     by a ripple carry under the mask of lanes with that outcome.
+ *
+ * Lanes may differ in strategies, memory and length. A lane with a shorter
+ * memory than the longest at its seat has its table widened to ignore the
+ * older rounds, and it plays its own opening until its own memory is
+ * filled. A lane drops out of the counts once its own number of rounds has
+ * been played.
+ *
+ * Only tables without conditions can be played this way. A condition would
+ * need a bit-sliced comparison of per-lane counters every round, which
+ * costs more than it saves. Results are exactly those of scoresOfMatch.
+ *
+ * The multiplexer tree has 8^k - 1 nodes per seat, so the work per round
+ * grows with the memory much faster than the scalar engine's. Against
+ * scoresOfMatch this pays off for memories of up to two rounds; see
+ * BitSlicedBenchmark.
+ */
+final class BitSlicedEngine {
+    static final int LANES = 64;
+
+    private final PayoffTable payoffs;
+    private final int memory;
+    // [seat][entry]: bit l of entry e is lane l's action at table index e
+    private final long[][] tables;
+    // [seat][round]: opening actions, and the lanes still in their opening
+    private final long[][] openings;
+    private final long[][] inOpening;
+    // Slot 3r + p is player p's action r + 1 rounds ago
+    private final long[] history;
+    // [seat][i]: the history slot that selects on bit i of the table index
+    private final int[][] selectors;
+    private final long[] scratch;
+    // [outcome][bit]: the bit-sliced counters, widened when a longer match
+    // needs more bits than they have
+    private long[][] counts = new long[8][16];
+    // The bits of the counters in use, enough for the longest lane
+    private int counterBits;
+    private final int[] laneCounts = new int[8];
+    private long[] ending = new long[0];
+
+    // An engine for strategies with a memory of at most the given number of
+    // rounds.
+    BitSlicedEngine(PayoffTable payoffs, int memory) {
+        if (memory < 0 || memory > TableStrategy.MAX_MEMORY)
+            throw new IllegalArgumentException("Memory must be between 0 and " + TableStrategy.MAX_MEMORY + ": " + memory);
+        this.payoffs = payoffs;
+        this.memory = memory;
+        this.tables = new long[3][1 << (3 * memory)];
+        this.openings = new long[3][memory];
+        this.inOpening = new long[3][memory];
+        this.history = new long[3 * memory];
+        // Index bit i is bit i % 3 of the outcome i / 3 + 1 rounds ago, as seen
+        // from the seat: bit 2 is its own action, bits 1 and 0 its opponents'
+        // in cyclic order.
+        this.selectors = new int[3][3 * memory];
+        for (int seat = 0; seat < 3; seat++)
+            for (int i = 0; i < 3 * memory; i++)
+                selectors[seat][i] = 3 * (i / 3) + (seat + 2 - i % 3) % 3;
+        this.scratch = new long[Math.max(1, (1 << (3 * memory)) / 2)];
+    }
+
+    // True if the strategy can be played by an engine of the given memory.
+    static boolean canPlay(TableStrategy strategy, int memory) {
+        return strategy.conditions() == 0 && strategy.tableMemory() <= memory;
+    }
+
+    // Plays lane l as A[l], B[l] and C[l] over rounds[l] rounds, for as many
+    // lanes as there are entries in A (at most 64), and stores the three
+    // average scores of lane l in scores[l] as scoresOfMatch would return.
+    void play(TableStrategy[] A, TableStrategy[] B, TableStrategy[] C, int[] rounds, float[][] scores) {
+        int lanes = A.length;
+        if (lanes > LANES || B.length != lanes || C.length != lanes || rounds.length < lanes)
+            throw new IllegalArgumentException("Between 0 and 64 lanes, with a strategy per seat and a length each");
+        load(0, A);
+        load(1, B);
+        load(2, C);
+        Arrays.fill(history, 0);
+
+        int longest = 0;
+        for (int l = 0; l < lanes; l++) {
+            if (rounds[l] < 0)
+                throw new IllegalArgumentException("A match cannot have " + rounds[l] + " rounds");
+            longest = Math.max(longest, rounds[l]);
+        }
+        // Counters only need to be as wide as the longest match
+        counterBits = 32 - Integer.numberOfLeadingZeros(longest);
+        if (counts[0].length < counterBits)
+            counts = new long[8][counterBits];
+        else
+            for (long[] counter : counts)
+                Arrays.fill(counter, 0);
+        if (ending.length <= longest)
+            ending = new long[longest + 1];
+        Arrays.fill(ending, 0, longest + 1, 0);
+        long active = 0;
+        for (int l = 0; l < lanes; l++) {
+            ending[rounds[l]] |= 1L << l;
+            active |= 1L << l;
+        }
+
+        for (int t = 0; t < longest; t++) {
+            active &= ~ending[t];
+            long a = action(0, t), b = action(1, t), c = action(2, t);
+            long na = ~a & active, nb = ~b, nc = ~c;
+            long ya = a & active;
+            long cc = nb & nc, cd = nb & c, dc = b & nc, dd = b & c;
+            increment(counts[0], na & cc);
+            increment(counts[1], na & cd);
+            increment(counts[2], na & dc);
+            increment(counts[3], na & dd);
+            increment(counts[4], ya & cc);
+            increment(counts[5], ya & cd);
+            increment(counts[6], ya & dc);
+            increment(counts[7], ya & dd);
+            for (int slot = history.length - 1; slot >= 3; slot--)
+                history[slot] = history[slot - 3];
+            if (memory > 0) {
+                history[0] = a;
+                history[1] = b;
+                history[2] = c;
+            }
+        }
+
+        for (int l = 0; l < lanes; l++) {
+            for (int outcome = 0; outcome < 8; outcome++) {
+                int count = 0;
+                for (int bit = 0; bit < counterBits; bit++)
+                    count |= (int) ((counts[outcome][bit] >>> l) & 1) << bit;
+                laneCounts[outcome] = count;
+            }
+            for (int seat = 0; seat < 3; seat++)
+                scores[l][seat] = (float) payoffs.total(laneCounts, seat) / rounds[l];
+        }
+    }
+
+    // Transposes the tables and openings of one seat's strategies into slices.
+    private void load(int seat, TableStrategy[] strategies) {
+        long[] table = tables[seat];
+        Arrays.fill(table, 0);
+        Arrays.fill(openings[seat], 0);
+        Arrays.fill(inOpening[seat], 0);
+        for (int l = 0; l < strategies.length; l++) {
+            TableStrategy strategy = strategies[l];
+            if (!canPlay(strategy, memory))
+                throw new IllegalArgumentException(strategy.name() + " needs conditions or more memory than "
+                        + memory + " rounds");
+            long lane = 1L << l;
+            int own = strategy.tableMemory(), mask = (1 << (3 * own)) - 1;
+            for (int entry = 0; entry < table.length; entry++)
+                table[entry] |= (long) strategy.action(entry & mask) << l;
+            for (int round = 0; round < own; round++) {
+                inOpening[seat][round] |= lane;
+                openings[seat][round] |= (long) strategy.opening(round) << l;
+            }
+        }
+    }
+
+    // The actions of every lane at one seat in round t.
+    private long action(int seat, int t) {
+        long[] table = tables[seat];
+        long decided;
+        if (memory == 0) {
+            decided = table[0];
+        } else {
+            int[] selector = selectors[seat];
+            long[] level = table;
+            for (int i = 0, size = table.length / 2; size >= 1; i++, size /= 2) {
+                long select = history[selector[i]];
+                for (int e = 0; e < size; e++)
+                    scratch[e] = level[2 * e] ^ (select & (level[2 * e + 1] ^ level[2 * e]));
+                level = scratch;
+            }
+            decided = scratch[0];
+        }
+        if (t < memory) {
+            long open = inOpening[seat][t];
+            decided = (open & openings[seat][t]) | (~open & decided);
+        }
+        return decided;
+    }
+
+    // Adds one to the bit-sliced counter in every lane of the mask. The carry
+    // is rippled through every bit rather than stopping once it is zero,
+    // since whether it is depends on the lanes and would be mispredicted.
+    private void increment(long[] counter, long carry) {
+        for (int bit = 0; bit < counterBits; bit++) {
+            long next = counter[bit] & carry;
+            counter[bit] ^= carry;
+            carry = next;
+        }
+    }
+}
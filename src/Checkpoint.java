@@ -0,0 +1,85 @@
+package src;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/*
+ * Saves the progress of a TournamentSeries so that a run that is killed can
+ * be resumed. A checkpoint holds the master seed and the Standings of the
+ * tournaments completed so far, which is everything the rest of the run
+ * depends on: every match's random draws follow from the seed and its
+ * tournament index (see MatchRandom), so there is no generator state to
+ * save. Checkpoints are only taken after whole blocks of the series, so a
+ * resumed run adds up the remaining blocks exactly as an uninterrupted run
+ * would.
+ *
+ * The file is written next to its final name, flushed to disk and then
+ * renamed over it, so a crash leaves either the old checkpoint or the new
+ * one.
+ */
+final class Checkpoint {
+    private static final int MAGIC = 0x33504443; // "3PDC"
+    private static final int VERSION = 5;
+
+    private final Path file;
+    private final int every;
+    private int saved;
+
+    // Saves to the given file once at least every tournaments have been
+    // completed since the last save, and at the end of the series.
+    Checkpoint(Path file, int every) {
+        this.file = file;
+        this.every = every;
+    }
+
+    // What a checkpoint holds.
+    static final class Saved {
+        final long seed;
+        final Standings standings;
+
+        Saved(long seed, Standings standings) {
+            this.seed = seed;
+            this.standings = standings;
+        }
+    }
+
+    // Called with the Standings after each block of a series of the given
+    // number of tournaments.
+    void reached(long seed, Standings standings, int tournaments) throws IOException {
+        if (standings.tournaments() - saved >= every || standings.tournaments() == tournaments)
+            save(seed, standings);
+    }
+
+    void save(long seed, Standings standings) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileOutputStream stream = new FileOutputStream(temporary.toFile())) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(seed);
+            standings.write(out);
+            out.flush();
+            stream.getFD().sync();
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        saved = standings.tournaments();
+    }
+
+    Saved load() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+                throw new IOException(file + " is not a tournament checkpoint");
+            long seed = in.readLong();
+            Standings standings = Standings.read(in);
+            saved = standings.tournaments();
+            return new Saved(seed, standings);
+        }
+    }
+}
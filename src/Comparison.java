@@ -0,0 +1,134 @@
+package src;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/*
+ * Compares two variants of a strategy by entering each of them, as the last
+ * player, in the same series of tournaments against the same roster. Both
+ * engines must have the same players apart from the variant. Tournament t
+ * of both runs then has the same triples with the same keys, so every match
+ * has the same length, and since each seat draws from its own stream (see
+ * MatchRandom), the opponents make the same random choices against either
+ * variant. The noise that the two runs share cancels out of the difference
+ * between them, which is what is reported: the mean over the tournaments of
+ * the variant's score and position in the first run minus those in the
+ * second, with a normal confidence interval.
+ *
+ * With antithetic pairs, tournament t is also played with every random
+ * draw complemented, and each observation is the average of the two. This
+ * helps where results depend monotonically on the draws, as they mostly do
+ * on the match length.
+ *
+ * How much was gained is estimated by comparing the variance of the paired
+ * difference with the sum of the variances of the two variants' own scores,
+ * which is what the difference of two independent runs would have.
+ */
+final class Comparison {
+    private final TournamentEngine first, second;
+    private final int variant;
+
+    Comparison(TournamentEngine first, TournamentEngine second) {
+        if (first.numPlayers() != second.numPlayers())
+            throw new IllegalArgumentException("The variants must play against the same roster");
+        this.first = first;
+        this.second = second;
+        this.variant = first.numPlayers() - 1;
+    }
+
+    // Plays the given number of tournaments, or pairs of them, of the run
+    // with the given seed on the given number of threads, and prints the
+    // differences at the given confidence.
+    void run(long seed, int tournaments, int workers, boolean antithetic, double confidence) {
+        // Each tournament's score and position of the variant in both runs
+        double[][] observed = new double[4][tournaments];
+        if (workers <= 1)
+            play(seed, 0, tournaments, antithetic, observed);
+        else {
+            ForkJoinPool pool = TournamentTriples.pool(workers);
+            List<ForkJoinTask<?>> blocks = new ArrayList<>();
+            for (int from = 0; from < tournaments; from += TournamentSeries.BLOCK) {
+                int start = from, end = Math.min(tournaments, from + TournamentSeries.BLOCK);
+                blocks.add(pool.submit(() -> play(seed, start, end, antithetic, observed)));
+            }
+            for (ForkJoinTask<?> block : blocks)
+                block.join();
+        }
+
+        double z = StoppingRule.normalQuantile(1 - (1 - confidence) / 2);
+        double[] scoreDifference = difference(observed[0], observed[1]);
+        double[] positionDifference = difference(observed[2], observed[3]);
+        String firstName = first.roster.name(variant), secondName = second.roster.name(variant);
+        System.out.println("Comparison of " + firstName + " with " + secondName + " over " + tournaments
+                + (antithetic ? " antithetic pairs of tournaments" : " tournaments")
+                + ", with common random numbers:");
+        System.out.println("Average score: " + firstName + " " + (float) mean(observed[0]) + ", " + secondName + " "
+                + (float) mean(observed[1]));
+        System.out.println("Average position: " + firstName + " " + (float) (mean(observed[2]) + 1) + ", "
+                + secondName + " " + (float) (mean(observed[3]) + 1));
+        System.out.println("Score difference: " + (float) mean(scoreDifference) + " +/- "
+                + (float) (z * Math.sqrt(variance(scoreDifference) / tournaments)) + " at " + 100 * confidence
+                + "% confidence");
+        System.out.println("Position difference: " + (float) mean(positionDifference) + " +/- "
+                + (float) (z * Math.sqrt(variance(positionDifference) / tournaments)) + " at " + 100 * confidence
+                + "% confidence");
+        double paired = variance(scoreDifference), independent = variance(observed[0]) + variance(observed[1]);
+        if (paired > 0)
+            System.out.println("Independent runs would need about " + (float) (independent / paired)
+                    + " times as many tournaments for the same score interval.");
+        else
+            System.out.println("The score difference did not vary at all.");
+    }
+
+    private void play(long seed, int from, int to, boolean antithetic, double[][] observed) {
+        for (int t = from; t < to; t++) {
+            play(first, seed, t, antithetic, observed[0], observed[2]);
+            play(second, seed, t, antithetic, observed[1], observed[3]);
+        }
+    }
+
+    // Stores the variant's score and position (0 for first) in tournament t,
+    // or their average over the antithetic pair.
+    private void play(TournamentEngine engine, long seed, int t, boolean antithetic, double[] score,
+            double[] position) {
+        score[t] = position[t] = 0;
+        for (int pass = 0; pass < (antithetic ? 2 : 1); pass++) {
+            ScoreSheet sheet = engine.runTournamentOnce(seed, t, pass == 1);
+            float mine = (float) sheet.score(variant);
+            int above = 0;
+            // The variant is last, so it finishes behind any player it ties with
+            for (int player = 0; player < variant; player++)
+                if ((float) sheet.score(player) >= mine)
+                    above++;
+            score[t] += sheet.score(variant);
+            position[t] += above;
+        }
+        if (antithetic) {
+            score[t] /= 2;
+            position[t] /= 2;
+        }
+    }
+
+    private static double[] difference(double[] a, double[] b) {
+        double[] result = new double[a.length];
+        for (int t = 0; t < a.length; t++)
+            result[t] = a[t] - b[t];
+        return result;
+    }
+
+    private static double mean(double[] values) {
+        double sum = 0;
+        for (double value : values)
+            sum += value;
+        return sum / values.length;
+    }
+
+    private static double variance(double[] values) {
+        double mean = mean(values), sum = 0;
+        for (double value : values)
+            sum += (value - mean) * (value - mean);
+        return sum / (values.length - 1);
+    }
+}
@@ -0,0 +1,79 @@
+package src;
+
+import java.util.Arrays;
+
+/*
+ * What each strategy of a roster costs to play, learnt from the matches as
+ * they are played. A match is timed as a whole, and its time is shared out
+ * among its three players in proportion to their current estimates (an
+ * even split until anything is known). Each strategy's estimate is then the
+ * time shared out to it per round it has played. Strategies that are
+ * cheap alongside expensive ones thereby lose their share of the blame as
+ * the estimates of the others settle.
+ *
+ * Threads time their matches into a Sample of their own and merge it into
+ * the model when they finish a piece of work, so the model is only locked
+ * once per piece.
+ */
+final class CostModel {
+    private final double[] attributed;
+    private final long[] rounds;
+    private final double[] estimate;
+
+    CostModel(int players) {
+        attributed = new double[players];
+        rounds = new long[players];
+        estimate = new double[players];
+        Arrays.fill(estimate, 1);
+    }
+
+    // Whether any matches have been timed yet.
+    synchronized boolean trained() {
+        for (long played : rounds)
+            if (played > 0)
+                return true;
+        return false;
+    }
+
+    // A copy of the estimated nanoseconds per round of each strategy, in
+    // arbitrary units until trained.
+    synchronized double[] estimates() {
+        return estimate.clone();
+    }
+
+    synchronized void merge(Sample sample) {
+        for (int player = 0; player < estimate.length; player++) {
+            attributed[player] += sample.attributed[player];
+            rounds[player] += sample.rounds[player];
+            if (rounds[player] > 0)
+                estimate[player] = attributed[player] / rounds[player];
+        }
+    }
+
+    Sample sample() {
+        return new Sample(estimates());
+    }
+
+    // The matches timed by one thread.
+    static final class Sample {
+        private final double[] estimate;
+        private final double[] attributed;
+        private final long[] rounds;
+
+        private Sample(double[] estimate) {
+            this.estimate = estimate;
+            attributed = new double[estimate.length];
+            rounds = new long[estimate.length];
+        }
+
+        void record(int i, int j, int k, int played, long nanos) {
+            double share = nanos / (estimate[i] + estimate[j] + estimate[k]);
+            attributed[i] += share * estimate[i];
+            attributed[j] += share * estimate[j];
+            attributed[k] += share * estimate[k];
+            rounds[i] += played;
+            rounds[j] += played;
+            rounds[k] += played;
+        }
+    }
+}
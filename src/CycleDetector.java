@@ -0,0 +1,105 @@
+package src;
+
+import java.util.Arrays;
+
+/*
+ * Fast-forwards matches between deterministic finite-memory strategies. If
+ * every player's decision is a fixed function of the joint outcomes of the
+ * last m rounds (see Strategy.memory()), then the whole match is determined by
+ * the outcomes of those m rounds. Once the same m outcomes recur, the match
+ * repeats the stretch of rounds in between for as long as it lasts, and the
+ * remaining outcome counts follow arithmetically from the counts over one
+ * cycle.
+ *
+ * The state of the match before round t is the outcome codes of rounds
+ * t - m .. t - 1, which only exists once t >= m. A table indexed by that
+ * state remembers when each was first seen, so with 3m bits of state, m is
+ * capped at MAX_MEMORY to keep the table small. A detector can be restarted
+ * for another match: entries are stamped with the match they were seen in,
+ * so the table never has to be cleared.
+ */
+final class CycleDetector {
+    static final int MAX_MEMORY = 4;
+
+    private final int memory;
+    private final int mask;
+    // The round at which each state was first seen before deciding, valid
+    // where seenIn holds the current match
+    private final int[] firstSeen;
+    private final int[] seenIn;
+    private byte[] outcomes;
+    private int match = 0;
+    private int state;
+    private int cycleStart;
+
+    CycleDetector(int memory, int rounds) {
+        this.memory = memory;
+        this.mask = (1 << (3 * memory)) - 1;
+        this.firstSeen = new int[1 << (3 * memory)];
+        this.seenIn = new int[1 << (3 * memory)];
+        this.outcomes = new byte[rounds];
+        restart(rounds);
+    }
+
+    // A detector for a match between the given strategies, or null if any of
+    // them does not declare a memory of at most MAX_MEMORY rounds.
+    static CycleDetector forMatch(int rounds, Strategy A, Strategy B, Strategy C) {
+        int memory = memory(A, B, C);
+        return memory < 0 ? null : new CycleDetector(memory, rounds);
+    }
+
+    // The memory a detector for a match between the given strategies needs,
+    // or -1 if the match cannot be fast-forwarded.
+    static int memory(Strategy A, Strategy B, Strategy C) {
+        int memory = Math.max(A.memory(), Math.max(B.memory(), C.memory()));
+        if (A.memory() < 0 || B.memory() < 0 || C.memory() < 0 || memory > MAX_MEMORY)
+            return -1;
+        return memory;
+    }
+
+    // Forgets the match so far and gets ready for a new one of the given
+    // number of rounds. Returns false if that took allocating more room.
+    boolean restart(int rounds) {
+        if (++match == 0) {
+            Arrays.fill(seenIn, 0);
+            match = 1;
+        }
+        state = 0;
+        cycleStart = -1;
+        if (outcomes.length >= rounds)
+            return true;
+        outcomes = new byte[rounds];
+        return false;
+    }
+
+    // Called before round t is played. Returns true if the match is about to
+    // repeat an earlier stretch of rounds, in which case fastForward() can
+    // account for the rest of it.
+    boolean repeats(int round) {
+        if (round < memory)
+            return false;
+        if (seenIn[state] == match) {
+            cycleStart = firstSeen[state];
+            return true;
+        }
+        firstSeen[state] = round;
+        seenIn[state] = match;
+        return false;
+    }
+
+    // Called after round t has been played with the given joint outcome.
+    void record(int round, int outcome) {
+        outcomes[round] = (byte) outcome;
+        state = ((state << 3) | outcome) & mask;
+    }
+
+    // Adds the outcomes of rounds [round, rounds) to counts, once repeats(round)
+    // has returned true.
+    void fastForward(int round, int rounds, int[] counts) {
+        int length = round - cycleStart;
+        int remaining = rounds - round;
+        int cycles = remaining / length, partial = remaining % length;
+        for (int t = cycleStart; t < round; t++)
+            counts[outcomes[t]] += cycles + (t - cycleStart < partial ? 1 : 0);
+    }
+}
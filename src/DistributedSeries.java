@@ -0,0 +1,213 @@
+package src;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Plays a TournamentSeries across several JVMs. A coordinator cuts every
+ * tournament into a number of triple-index ranges (see TripleIndex) and
+ * hands them out over TCP to the workers that connect to it; a worker plays
+ * a range with its own threads and sends back the ScoreSheet. Scores in a
+ * ScoreSheet are exact, so the pieces of a tournament add up to exactly the
+ * scores of playing it in one go, and the coordinator folds the finished
+ * tournaments into Standings in tournament order and in the same blocks as
+ * TournamentSeries. The result is identical to a single-process run with
+ * the same seed, however many workers take part.
+ *
+ * A worker plays one range at a time. If its connection fails before the
+ * result arrives, or the result does not start arriving within the timeout,
+ * the connection is closed and the range goes back to the front of the
+ * queue for the next worker that asks, so a worker that hangs only holds up
+ * its range for the timeout. A range that arrives twice is only counted
+ * once. Workers must be started with the same roster and payoff
+ * options as the coordinator; the coordinator only checks the number of
+ * players.
+ *
+ * Messages are written with DataOutputStream. The coordinator opens with
+ * the number of players and the master seed, then sends either
+ * RANGE, tournament, from, to, answered by the ScoreSheet, or DONE.
+ */
+final class DistributedSeries {
+    private static final int RANGE = 1, DONE = 2;
+
+    private final TournamentEngine engine;
+    private final int tournaments;
+    private final long seed;
+    private final int split;
+    // Milliseconds to wait for a worker's result
+    private final int timeout;
+    // The number of ranges of each tournament that are not empty
+    private final int pieces;
+
+    // Ranges waiting to be played, each as {tournament, from, to}
+    private final BlockingDeque<long[]> queue = new LinkedBlockingDeque<>();
+    // The sum of the ranges received so far of each unfinished tournament,
+    // and where each of those ranges starts
+    private final Map<Long, ScoreSheet> sheets = new HashMap<>();
+    private final Map<Long, Set<Long>> received = new HashMap<>();
+    // Finished tournaments waiting for the ones before them
+    private final Map<Long, ScoreSheet> finished = new HashMap<>();
+    private final Standings standings;
+    private Standings block;
+    private long folded = 0;
+    private float[] first;
+
+    // A series of the given number of tournaments, each cut into split
+    // ranges, waiting at most timeout milliseconds for each result
+    DistributedSeries(TournamentEngine engine, int tournaments, long seed, int split, long timeout) {
+        if (timeout <= 0 || timeout > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("The worker timeout must be positive and below 2^31 ms: " + timeout);
+        this.engine = engine;
+        this.tournaments = tournaments;
+        this.seed = seed;
+        this.split = split;
+        this.timeout = (int) timeout;
+        this.pieces = (int) Math.min(split, new TripleIndex(engine.numPlayers()).count());
+        this.standings = new Standings(engine.numPlayers());
+        this.block = new Standings(engine.numPlayers());
+    }
+
+    // Hands out the series to the workers that connect on the given port and
+    // returns the Standings once every tournament is in.
+    Standings coordinate(int port) throws IOException, InterruptedException {
+        long count = new TripleIndex(engine.numPlayers()).count();
+        for (long t = 0; t < tournaments; t++) {
+            long[] bounds = TripleIndex.split(0, count, split);
+            for (int r = 0; r < split; r++)
+                if (bounds[r] < bounds[r + 1])
+                    queue.add(new long[] {t, bounds[r], bounds[r + 1]});
+        }
+        try (ServerSocket server = new ServerSocket(port)) {
+            Thread acceptor = new Thread(() -> {
+                try {
+                    while (true) {
+                        Socket socket = server.accept();
+                        Thread handler = new Thread(() -> serve(socket));
+                        handler.setDaemon(true);
+                        handler.start();
+                    }
+                } catch (IOException e) {
+                    // The server socket is closed once the series is done
+                }
+            });
+            acceptor.setDaemon(true);
+            acceptor.start();
+            synchronized (this) {
+                while (folded < tournaments)
+                    wait();
+            }
+        }
+        return standings;
+    }
+
+    // The scores of tournament 0, once it is in.
+    synchronized float[] first() {
+        return first;
+    }
+
+    private synchronized boolean done() {
+        return folded >= tournaments;
+    }
+
+    private void serve(Socket socket) {
+        long[] range = null;
+        try (Socket s = socket) {
+            s.setSoTimeout(timeout);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+            out.writeInt(engine.numPlayers());
+            out.writeLong(seed);
+            out.flush();
+            while (true) {
+                range = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (range == null) {
+                    if (done()) {
+                        out.writeInt(DONE);
+                        out.flush();
+                        return;
+                    }
+                    continue;
+                }
+                out.writeInt(RANGE);
+                for (long value : range)
+                    out.writeLong(value);
+                out.flush();
+                ScoreSheet sheet = ScoreSheet.read(in);
+                deliver(range, sheet);
+                range = null;
+            }
+        } catch (IOException | InterruptedException e) {
+            // Including a SocketTimeoutException from a worker that hangs
+            if (range != null)
+                queue.addFirst(range);
+        }
+    }
+
+    private synchronized void deliver(long[] range, ScoreSheet sheet) {
+        long tournament = range[0];
+        // A range given up on and played again by another worker may still
+        // come in from the first
+        if (tournament < folded || finished.containsKey(tournament))
+            return;
+        Set<Long> starts = received.computeIfAbsent(tournament, t -> new HashSet<>());
+        if (!starts.add(range[1]))
+            return;
+        ScoreSheet sum = sheets.get(tournament);
+        if (sum == null)
+            sheets.put(tournament, sum = sheet);
+        else
+            sum.merge(sheet);
+        if (starts.size() < pieces)
+            return;
+        sheets.remove(tournament);
+        received.remove(tournament);
+        finished.put(tournament, sum);
+        // Fold in tournament order, in the blocks TournamentSeries uses
+        while (finished.containsKey(folded)) {
+            ScoreSheet scores = finished.remove(folded);
+            if (folded == 0)
+                first = scores.averages();
+            block.add(scores);
+            folded++;
+            if (folded % TournamentSeries.BLOCK == 0 || folded == tournaments) {
+                standings.merge(block);
+                block = new Standings(engine.numPlayers());
+            }
+        }
+        notifyAll();
+    }
+
+    // Plays the ranges handed out by the coordinator at the given address on
+    // the given number of threads, until it is done.
+    static void work(TournamentEngine engine, String host, int port, int workers) throws IOException {
+        try (Socket socket = new Socket(host, port)) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            int players = in.readInt();
+            long seed = in.readLong();
+            if (players != engine.numPlayers())
+                throw new IllegalStateException("The coordinator has " + players + " players, this worker "
+                        + engine.numPlayers());
+            while (in.readInt() == RANGE) {
+                long tournament = in.readLong(), from = in.readLong(), to = in.readLong();
+                new TournamentTriples(players, seed, tournament).play(engine, from, to, workers).write(out);
+                out.flush();
+            }
+        } catch (EOFException e) {
+            // The coordinator finished before telling this worker it was done
+        }
+    }
+}
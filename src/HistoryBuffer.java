@@ -0,0 +1,62 @@
+package src;
+
+import java.util.Arrays;
+
+/*
+ * The record of one player's actions during a match. The backing array is
+ * allocated once with room for every round, so appending an action costs O(1)
+ * instead of copying the whole history as extendIntArray used to.
+ *
+ * Strategies are handed the backing array directly: entries [0, n) are the
+ * rounds played so far and the remainder is unused. Strategies that read
+ * history.length instead of n ask for an exact-length copy through
+ * toArray(), which is made at most once per round and shared by every
+ * player that asks for it.
+ */
+class HistoryBuffer {
+    private int[] actions;
+    private int size = 0;
+
+    // Exact-length copy of actions[0, size), or null if it is stale
+    private int[] snapshot = new int[0];
+
+    HistoryBuffer(int capacity) {
+        actions = new int[capacity];
+    }
+
+    // Empties the history for a match of the given number of rounds, and
+    // returns false if it had to grow to hold them.
+    boolean restart(int capacity) {
+        size = 0;
+        snapshot = null;
+        if (actions.length >= capacity)
+            return true;
+        actions = new int[capacity];
+        return false;
+    }
+
+    void append(int action) {
+        actions[size++] = action;
+        snapshot = null;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int get(int round) {
+        return actions[round];
+    }
+
+    // The backing array; only entries [0, size()) are meaningful.
+    int[] array() {
+        return actions;
+    }
+
+    // A copy of the history whose length equals the number of rounds played.
+    int[] toArray() {
+        if (snapshot == null)
+            snapshot = Arrays.copyOf(actions, size);
+        return snapshot;
+    }
+}
@@ -0,0 +1,82 @@
+package src;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Takes the match length out of the noise of a series of tournaments. The
+ * length of a match is 90 + rint(20 * random), whose exact distribution is
+ * that of MatchRandom's LENGTH_SLOTS equally likely slots, and strategies
+ * that play differently near the end of a match make their scores depend
+ * heavily on it.
+ *
+ * A match in which no player draws a random number is a fixed function of
+ * its length. The first time a triple comes up, it is played at each of
+ * the 21 lengths, as probes that are not printed or measured (see
+ * Game.probeTriple()), and if nobody drew anything its weighted totals are
+ * remembered: from then on every tournament counts the triple at its exact
+ * expected score (see ScoreSheet.addExpected()) without playing it. A
+ * triple in which somebody drew is random, and is played at a stratified
+ * length instead (see MatchRandom.stratifiedRounds()), so that every 40
+ * tournaments in a row give each slot of lengths to it exactly once.
+ *
+ * Either way each tournament's expected scores are unchanged and only
+ * their variance shrinks. Positions and first places are then those of
+ * tournaments in which deterministic triples score their expectation.
+ */
+final class LengthStrata {
+    // Marks a triple in which somebody drew a random number
+    private static final long[] RANDOM = new long[0];
+
+    // By triple index: null until the triple has been tried, then RANDOM or
+    // the weighted total of each seat at each length, seat-major
+    private final AtomicReferenceArray<long[]> exact;
+    // The matches played to try triples at every length
+    private final LongAdder played = new LongAdder();
+
+    LengthStrata(int players) {
+        long count = new TripleIndex(players).count();
+        if (count > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Cannot stratify a tournament of " + count + " triples");
+        exact = new AtomicReferenceArray<>((int) count);
+    }
+
+    // Adds the expected scores of triple (i, j, k), which has the given index,
+    // to the sheet and returns true, or returns false if the triple is random
+    // and has to be played.
+    boolean addExpected(TournamentTriples.Game game, long index, int i, int j, int k, long key, ScoreSheet sheet) {
+        long[] weighted = exact.get((int) index);
+        if (weighted == null) {
+            weighted = tryAllLengths(game, i, j, k, key);
+            exact.set((int) index, weighted);
+        }
+        if (weighted == RANDOM)
+            return false;
+        int lengths = MatchRandom.MAX_ROUNDS - MatchRandom.MIN_ROUNDS + 1;
+        for (int seat = 0; seat < 3; seat++) {
+            int player = seat == 0 ? i : seat == 1 ? j : k;
+            for (int length = 0; length < lengths; length++)
+                sheet.addExpected(player, weighted[seat * lengths + length], MatchRandom.MIN_ROUNDS + length);
+        }
+        return true;
+    }
+
+    long played() {
+        return played.sum();
+    }
+
+    private long[] tryAllLengths(TournamentTriples.Game game, int i, int j, int k, long key) {
+        int lengths = MatchRandom.MAX_ROUNDS - MatchRandom.MIN_ROUNDS + 1;
+        long[] weighted = new long[3 * lengths];
+        for (int length = 0; length < lengths; length++) {
+            int rounds = MatchRandom.MIN_ROUNDS + length;
+            int[] totals = game.probeTriple(i, j, k, rounds, key);
+            played.increment();
+            if (game.drew())
+                return RANDOM;
+            for (int seat = 0; seat < 3; seat++)
+                weighted[seat * lengths + length] = (long) MatchRandom.lengthWeight(rounds) * totals[seat];
+        }
+        return weighted;
+    }
+}
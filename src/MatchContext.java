@@ -0,0 +1,98 @@
+package src;
+
+/*
+ * A read-only view of a match in progress from one player's seat, handed to
+ * strategies that override usesContext() in Player. "my" refers to the player
+ * itself and opp1/opp2 to its opponents, in the same order as the history
+ * arrays passed to the int[] selectAction.
+ *
+ * Every method is O(1): the counts and scores are maintained by the engine
+ * as the match is played.
+ */
+final class MatchContext {
+    private final MatchState state;
+    private final int me, opp1, opp2;
+
+    MatchContext(MatchState state, int seat) {
+        this.state = state;
+        this.me = seat;
+        this.opp1 = (seat + 1) % 3;
+        this.opp2 = (seat + 2) % 3;
+    }
+
+    // The number of rounds played so far (n in selectAction).
+    int round() {
+        return state.round();
+    }
+
+    BitHistory myHistory() {
+        return state.bits(me);
+    }
+
+    BitHistory opp1History() {
+        return state.bits(opp1);
+    }
+
+    BitHistory opp2History() {
+        return state.bits(opp2);
+    }
+
+    // The action each player took in the previous round; only valid once
+    // round() > 0.
+    int myLastAction() {
+        return state.bits(me).get(state.round() - 1);
+    }
+
+    int opp1LastAction() {
+        return state.bits(opp1).get(state.round() - 1);
+    }
+
+    int opp2LastAction() {
+        return state.bits(opp2).get(state.round() - 1);
+    }
+
+    // Cumulative number of rounds in which each player cooperated.
+    int myCooperations() {
+        return state.cooperations(me);
+    }
+
+    int opp1Cooperations() {
+        return state.cooperations(opp1);
+    }
+
+    int opp2Cooperations() {
+        return state.cooperations(opp2);
+    }
+
+    // Cumulative number of rounds in which each player defected.
+    int myDefections() {
+        return state.round() - state.cooperations(me);
+    }
+
+    int opp1Defections() {
+        return state.round() - state.cooperations(opp1);
+    }
+
+    int opp2Defections() {
+        return state.round() - state.cooperations(opp2);
+    }
+
+    // Statistics over the last k rounds, for a k returned by the player's
+    // windows() method.
+    RecentWindow window(int k) {
+        return state.window(me, k);
+    }
+
+    // Total payoff each player has collected so far in this match.
+    int myScore() {
+        return state.score(me);
+    }
+
+    int opp1Score() {
+        return state.score(opp1);
+    }
+
+    int opp2Score() {
+        return state.score(opp2);
+    }
+}
@@ -0,0 +1,149 @@
+package src;
+
+/*
+ * The random source the engine hands to each match, in place of the
+ * JVM-wide Math.random(). It is SplitMix64: one long of state advanced by a
+ * constant and mixed on output, so a draw allocates nothing and takes no
+ * lock, and a match seeded the same way plays out the same way whichever
+ * thread runs it.
+ *
+ * The n-th output from a seed is just mix(seed + n * GAMMA), so the
+ * generator is counter-based and needs no history. Every match of a run is
+ * given a key computed from the master seed, the tournament index and its
+ * triple (i, j, k) alone. Output 0 from the key is the match length, and
+ * outputs 1, 2 and 3 seed a stream of its own for each seat (see split()),
+ * so what one player draws never shifts what the others draw. A match
+ * therefore comes out the same whether it is played on its own, in any
+ * order, on any thread, or in another process, and a seat draws the same
+ * numbers whoever sits in the other seats.
+ *
+ * An antithetic generator returns the complement of every output, so each
+ * uniform draw u becomes 1 - u - 2^-53 and each match length l about
+ * 200 - l. Playing a tournament both ways gives a pair of negatively
+ * correlated results; see Comparison.
+ *
+ * The distribution of match lengths is that of LENGTH_SLOTS equally likely
+ * slots, where slot s gives 90 + (s + 1) / 2 rounds: 90 and 110 have one
+ * slot each, probability 1/40, and every length in between two, 1/20.
+ * stratifiedRounds() deals the slots out to the tournaments of a series in
+ * turn instead of drawing them; see LengthStrata.
+ */
+final class MatchRandom {
+    private static final long GAMMA = 0x9E3779B97F4A7C15L;
+
+    static final int LENGTH_SLOTS = 40;
+    static final int MIN_ROUNDS = 90, MAX_ROUNDS = 110;
+
+    private long state;
+    private long start;
+    private boolean antithetic;
+
+    MatchRandom(long seed) {
+        state = seed;
+    }
+
+    // Restarts the sequence from the given seed.
+    void reseed(long seed) {
+        reseed(seed, false);
+    }
+
+    void reseed(long seed, boolean antithetic) {
+        state = start = seed;
+        this.antithetic = antithetic;
+    }
+
+    // Whether anything has been drawn since the generator was last seeded.
+    boolean drawn() {
+        return state != start;
+    }
+
+    long nextLong() {
+        long bits = mix(state += GAMMA);
+        return antithetic ? ~bits : bits;
+    }
+
+    // Starts the given generator on a stream of its own seeded from the next
+    // output of this one, antithetic if this one is, and returns it.
+    MatchRandom split(MatchRandom into) {
+        into.reseed(mix(state += GAMMA), antithetic);
+        return into;
+    }
+
+    // Uniform in [0, 1), like Math.random().
+    double nextDouble() {
+        return toDouble(nextLong());
+    }
+
+    // Uniform in [0, bound), for bound > 0.
+    int nextInt(int bound) {
+        return (int) (((nextLong() >>> 32) * bound) >>> 32);
+    }
+
+    // The key of match (i, j, k), for i <= j <= k < 2^21, of the given
+    // tournament in a run with the given master seed.
+    static long key(long seed, long tournament, int i, int j, int k) {
+        long triple = ((long) i << 42) | ((long) j << 21) | k;
+        return mix(mix(seed + (tournament + 1) * GAMMA) + (triple + 1) * GAMMA);
+    }
+
+    // The length of the match with the given key, distributed as
+    // 90 + rint(20 * Math.random()), i.e. between 90 and 110 rounds.
+    static int rounds(long key) {
+        return rounds(key, false);
+    }
+
+    // The length of the match with the given key when it is played
+    // antithetically or not.
+    static int rounds(long key, boolean antithetic) {
+        long bits = mix(key);
+        return 90 + (int) Math.rint(20 * toDouble(antithetic ? ~bits : bits));
+    }
+
+    // The length of match (i, j, k) of the given tournament when the lengths
+    // are stratified. The tournaments are taken in cycles of LENGTH_SLOTS,
+    // and in each cycle the triple plays each slot once, in an order shuffled
+    // by the master seed, the cycle and the triple; the mirror image of the
+    // slot is played if antithetic. Every tournament still has the
+    // distribution of rounds(), and different triples are shuffled
+    // independently, so their lengths in one tournament are unrelated.
+    static int stratifiedRounds(long seed, long tournament, int i, int j, int k, boolean antithetic) {
+        // No tournament has a negative number, so these keys are the triple's own
+        long shuffle = key(seed, -1 - tournament / LENGTH_SLOTS, i, j, k);
+        int slot = permute((int) (tournament % LENGTH_SLOTS), shuffle);
+        return MIN_ROUNDS + ((antithetic ? LENGTH_SLOTS - 1 - slot : slot) + 1) / 2;
+    }
+
+    // A permutation of [0, LENGTH_SLOTS) chosen by the given key: a
+    // four-round Feistel network on six bits, applied again until the
+    // result is back in range.
+    private static int permute(int slot, long key) {
+        int x = slot;
+        do {
+            int left = x >>> 3, right = x & 7;
+            for (int round = 0; round < 4; round++) {
+                int next = left ^ ((int) mix(key + ((round << 3) | right)) & 7);
+                left = right;
+                right = next;
+            }
+            x = (left << 3) | right;
+        } while (x >= LENGTH_SLOTS);
+        return x;
+    }
+
+    // The number of slots that give the given length.
+    static int lengthWeight(int rounds) {
+        if (rounds < MIN_ROUNDS || rounds > MAX_ROUNDS)
+            return 0;
+        return rounds == MIN_ROUNDS || rounds == MAX_ROUNDS ? 1 : 2;
+    }
+
+    private static double toDouble(long bits) {
+        return (bits >>> 11) * 0x1.0p-53;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
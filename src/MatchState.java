@@ -0,0 +1,175 @@
+package src;
+
+import java.util.Arrays;
+
+/*
+ * Everything the engine knows about a match in progress, kept up to date one
+ * round at a time: the joint outcome code of every round, each player's
+ * history, how often each has cooperated and the payoff each has collected so
+ * far. Updating these costs O(1) per round, so strategies that read them
+ * through a MatchContext no longer need to rescan the histories or replay the
+ * payoff matrix themselves.
+ *
+ * Players are indexed by seat: 0, 1 and 2 for A, B and C in scoresOfMatch.
+ *
+ * A MatchState can be restarted for another match between the same or
+ * other players (see MatchWorkspace). It keeps its arrays and windows if
+ * they are large enough and of the right sizes, so a restarted state
+ * allocates nothing once it has seen the longest match and the windows of
+ * every player in each seat.
+ */
+class MatchState {
+    private static final RecentWindow[] NO_WINDOWS = new RecentWindow[0];
+
+    private final PayoffTable payoffs;
+    private int round = 0;
+
+    private byte[] outcomes;
+    private final BitHistory[] bits = new BitHistory[3];
+    // The int[] histories, made the first time some player reads them
+    private HistoryBuffer[] arrays;
+    private boolean keepArrays;
+    private final int[] cooperations = new int[3];
+    private final int[] scores = new int[3];
+    private final MatchContext[] contexts = new MatchContext[3];
+    private final RecentWindow[][] windows = new RecentWindow[3][];
+    // Whether anything was made or grown since the last call of grew()
+    private boolean grew;
+
+    // The int[] histories are only kept when arrays is true, i.e. when some
+    // player still reads them.
+    MatchState(int rounds, PayoffTable payoffs, boolean arrays) {
+        this.payoffs = payoffs;
+        this.outcomes = new byte[rounds];
+        for (int seat = 0; seat < 3; seat++) {
+            bits[seat] = new BitHistory(rounds);
+            contexts[seat] = new MatchContext(this, seat);
+            windows[seat] = NO_WINDOWS;
+        }
+        keepArrays(rounds, arrays);
+    }
+
+    // Empties the state for a new match of the given number of rounds, as
+    // the constructor would have left it. Windows must be registered again.
+    void restart(int rounds, boolean arrays) {
+        round = 0;
+        Arrays.fill(cooperations, 0);
+        Arrays.fill(scores, 0);
+        if (outcomes.length < rounds) {
+            outcomes = new byte[rounds];
+            grew = true;
+        }
+        for (int seat = 0; seat < 3; seat++)
+            if (!bits[seat].restart(rounds))
+                grew = true;
+        keepArrays(rounds, arrays);
+    }
+
+    private void keepArrays(int rounds, boolean arrays) {
+        keepArrays = arrays;
+        if (!arrays)
+            return;
+        if (this.arrays == null) {
+            this.arrays = new HistoryBuffer[3];
+            for (int seat = 0; seat < 3; seat++)
+                this.arrays[seat] = new HistoryBuffer(rounds);
+            grew = true;
+        } else
+            for (int seat = 0; seat < 3; seat++)
+                if (!this.arrays[seat].restart(rounds))
+                    grew = true;
+    }
+
+    // Starts maintaining a window over the last k rounds, for each k in
+    // sizes, from the given seat, and none for null. Must be called before
+    // the first round. Windows of the same sizes as in the last match are
+    // restarted rather than made again.
+    void registerWindows(int seat, int[] sizes) {
+        if (sizes == null) {
+            windows[seat] = NO_WINDOWS;
+            return;
+        }
+        RecentWindow[] kept = windows[seat];
+        boolean same = kept.length == sizes.length;
+        for (int w = 0; same && w < sizes.length; w++)
+            same = kept[w].size() == sizes[w];
+        if (same) {
+            for (RecentWindow window : kept)
+                window.restart();
+            return;
+        }
+        windows[seat] = new RecentWindow[sizes.length];
+        for (int w = 0; w < sizes.length; w++)
+            windows[seat][w] = new RecentWindow(sizes[w], this, seat);
+        grew = true;
+    }
+
+    // Whether anything was made or grown since the last call.
+    boolean grew() {
+        boolean result = grew;
+        grew = false;
+        return result;
+    }
+
+    // Appends one round, given as its joint outcome code (see PayoffTable).
+    void record(int outcome) {
+        int a = outcome >>> 2, b = (outcome >>> 1) & 1, c = outcome & 1;
+        outcomes[round] = (byte) outcome;
+        scores[0] += payoffs.payoff(outcome, 0);
+        scores[1] += payoffs.payoff(outcome, 1);
+        scores[2] += payoffs.payoff(outcome, 2);
+        cooperations[0] += 1 - a;
+        cooperations[1] += 1 - b;
+        cooperations[2] += 1 - c;
+        bits[0].append(a);
+        bits[1].append(b);
+        bits[2].append(c);
+        if (keepArrays) {
+            arrays[0].append(a);
+            arrays[1].append(b);
+            arrays[2].append(c);
+        }
+        for (RecentWindow[] seatWindows : windows)
+            for (RecentWindow window : seatWindows)
+                window.advance(round);
+        round++;
+    }
+
+    // Number of rounds recorded so far.
+    int round() {
+        return round;
+    }
+
+    // The joint outcome code of the given round.
+    int outcome(int round) {
+        return outcomes[round];
+    }
+
+    BitHistory bits(int seat) {
+        return bits[seat];
+    }
+
+    HistoryBuffer history(int seat) {
+        return arrays[seat];
+    }
+
+    int cooperations(int seat) {
+        return cooperations[seat];
+    }
+
+    int score(int seat) {
+        return scores[seat];
+    }
+
+    RecentWindow window(int seat, int size) {
+        for (RecentWindow window : windows[seat])
+            if (window.size() == size)
+                return window;
+        throw new IllegalStateException("No window of " + size + " rounds was registered for this player");
+    }
+
+    // The view of this match from the given seat.
+    MatchContext context(int seat) {
+        return contexts[seat];
+    }
+}
@@ -0,0 +1,81 @@
+package src;
+
+/*
+ * Everything a thread needs to play matches that it can keep from one match
+ * to the next: the outcome counts, the result, the MatchRandom of the match
+ * and of each seat, a CycleDetector for each memory, the MatchState that
+ * Players read and a ScoreSheet for its tournaments. It also keeps the copy
+ * of each strategy it last played in each seat, and plays that copy again
+ * if it can be reset (see Strategy.reset() and Player.reset()). Once every
+ * strategy of a tournament has been seen, a match between strategies that
+ * can be reset allocates nothing. Players that cannot be reset are still
+ * made fresh for every match.
+ */
+final class MatchWorkspace {
+    // The number of rounds of the match with each joint outcome code
+    final int[] counts = new int[8];
+    // The total payoff of each seat, returned by the match just played
+    final int[] totals = new int[3];
+    final MatchRandom random = new MatchRandom(0);
+    final MatchRandom[] seats = {new MatchRandom(0), new MatchRandom(0), new MatchRandom(0)};
+    // Whether any seat drew from its MatchRandom in the match just played
+    boolean drew;
+    final ScoreSheet sheet;
+
+    private final CycleDetector[] detectors = new CycleDetector[CycleDetector.MAX_MEMORY + 1];
+    private MatchState state;
+    // [seat][player]: the copy last played in that seat
+    private final Strategy[][] strategies;
+    // Whether nothing was made or grown for the match since the last call of
+    // reused()
+    private boolean reused;
+
+    MatchWorkspace(int players) {
+        sheet = new ScoreSheet(players);
+        strategies = new Strategy[3][players];
+    }
+
+    // The given player of the roster, ready to play a new match in the given
+    // seat.
+    Strategy strategy(Roster roster, int seat, int player) {
+        Strategy strategy = strategies[seat][player];
+        if (strategy != null && strategy.reset())
+            return strategy;
+        reused = false;
+        return strategies[seat][player] = roster.make(player);
+    }
+
+    // Whether the strategies, detector and state taken since the last call
+    // were all reused as they were, so that the match allocated nothing.
+    boolean reused() {
+        boolean all = reused && (state == null || !state.grew());
+        reused = true;
+        return all;
+    }
+
+    // The restarted MatchState for a match of the given number of rounds;
+    // see MatchState.restart.
+    MatchState state(int rounds, PayoffTable payoffs, boolean arrays) {
+        if (state == null) {
+            reused = false;
+            return state = new MatchState(rounds, payoffs, arrays);
+        }
+        state.restart(rounds, arrays);
+        return state;
+    }
+
+    // A restarted detector for a match between the given strategies, or null
+    // if the match cannot be fast-forwarded.
+    CycleDetector detector(int rounds, Strategy A, Strategy B, Strategy C) {
+        int memory = CycleDetector.memory(A, B, C);
+        if (memory < 0)
+            return null;
+        if (detectors[memory] == null) {
+            reused = false;
+            return detectors[memory] = new CycleDetector(memory, rounds);
+        }
+        if (!detectors[memory].restart(rounds))
+            reused = false;
+        return detectors[memory];
+    }
+}
@@ -0,0 +1,86 @@
+package src;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/*
+ * The 2x2x2 payoff matrix flattened by joint outcome. The actions a, b, c of
+ * the three players in a round are coded as the 3-bit number
+ *
+ *   outcome = (a << 2) | (b << 1) | c
+ *
+ * and entry 3 * outcome + seat of the table holds the payoff to the player in
+ * that seat, so one index gives all three payoffs of a round.
+ *
+ * A matrix can be loaded from a text file holding its eight entries
+ * payoff[i][j][k] in outcome order (000, 001, 010, ..., 111), separated by
+ * whitespace or commas. Anything after a '#' on a line is ignored.
+ */
+final class PayoffTable {
+    private final int[] table = new int[24];
+
+    PayoffTable(int[][][] matrix) {
+        for (int outcome = 0; outcome < 8; outcome++) {
+            int a = outcome >>> 2, b = (outcome >>> 1) & 1, c = outcome & 1;
+            table[3 * outcome] = matrix[a][b][c];
+            table[3 * outcome + 1] = matrix[b][c][a];
+            table[3 * outcome + 2] = matrix[c][a][b];
+        }
+    }
+
+    static int outcome(int a, int b, int c) {
+        return (a << 2) | (b << 1) | c;
+    }
+
+    // The same outcome as seen from the given seat, i.e. with that seat's
+    // action in the highest bit followed by its opponents' in cyclic order.
+    static int rotate(int outcome, int seat) {
+        return ((outcome << seat) | (outcome >>> (3 - seat))) & 7;
+    }
+
+    // The payoff of one round to the player in the given seat (0, 1 or 2).
+    int payoff(int outcome, int seat) {
+        return table[3 * outcome + seat];
+    }
+
+    // The payoff to a player who played i against opponents who played j and k.
+    int payoff(int i, int j, int k) {
+        return table[3 * outcome(i, j, k)];
+    }
+
+    // Total payoff to the player in the given seat over a match in which each
+    // outcome occurred counts[outcome] times.
+    int total(int[] counts, int seat) {
+        int total = 0;
+        for (int outcome = 0; outcome < 8; outcome++)
+            total += counts[outcome] * table[3 * outcome + seat];
+        return total;
+    }
+
+    static PayoffTable load(Path file) throws IOException {
+        return parse(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+    }
+
+    static PayoffTable parse(String text) {
+        int[][][] matrix = new int[2][2][2];
+        int entries = 0;
+        for (String line : text.split("\n")) {
+            int comment = line.indexOf('#');
+            if (comment >= 0)
+                line = line.substring(0, comment);
+            for (String token : line.trim().split("[\\s,]+")) {
+                if (token.isEmpty())
+                    continue;
+                if (entries == 8)
+                    throw new IllegalArgumentException("A payoff matrix has exactly 8 entries");
+                matrix[entries >>> 2][(entries >>> 1) & 1][entries & 1] = Integer.parseInt(token);
+                entries++;
+            }
+        }
+        if (entries != 8)
+            throw new IllegalArgumentException("A payoff matrix has exactly 8 entries, found " + entries);
+        return new PayoffTable(matrix);
+    }
+}
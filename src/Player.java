@@ -0,0 +1,82 @@
+package src;
+
+/*
+ * The original way of writing a strategy: selectAction is handed the match
+ * so far before every round and returns 0 to cooperate or 1 to defect. The
+ * engine runs Players through a PlayerAdapter. A Player holds no reference
+ * to the tournament it plays in, so any thread may create and run one. It
+ * is created fresh for every match unless it can be reset (see reset()).
+ */
+abstract class Player {
+    // This procedure takes in the number of rounds elapsed so far (n), and
+    // the previous plays in the match, and returns the appropriate action.
+    int selectAction(int n, int[] myHistory, int[] oppHistory1, int[] oppHistory2) {
+        throw new RuntimeException("You need to override the selectAction method.");
+    }
+
+    // The history arrays passed to selectAction may be longer than n; only
+    // the first n entries are rounds played so far. A strategy that relies
+    // on history.length == n must override this to return true.
+    boolean needsExactHistory() {
+        return false;
+    }
+
+    // Strategies that override usesContext() to return true are called
+    // through this method instead. The context gives the number of rounds
+    // played, bit-packed histories, and each player's cooperation count
+    // and running score, all maintained by the engine.
+    int selectAction(MatchContext context) {
+        throw new RuntimeException("You need to override the MatchContext selectAction method.");
+    }
+
+    boolean usesContext() {
+        return false;
+    }
+
+    // Puts this player back in the state of a fresh one and returns true, so
+    // that the engine can play its next match with it instead of making a
+    // new one (see Strategy.reset()); returns false if it cannot. A player
+    // that keeps nothing of its own from one round to the next can simply
+    // return true; one with fields must set them back as the constructor
+    // left them.
+    boolean reset() {
+        return false;
+    }
+
+    // The sizes k of the last-k round windows this strategy reads through
+    // MatchContext.window(k). They are maintained incrementally by the
+    // engine, so a window costs the same per round whatever its size.
+    int[] windows() {
+        return null;
+    }
+
+    // The number of previous rounds m that decisions depend on, for a
+    // strategy whose action is a deterministic function of the actions
+    // of all three players in the last m rounds (once m rounds have been
+    // played); -1 otherwise. See Strategy.memory().
+    int memory() {
+        return -1;
+    }
+
+    // A strategy that knows it will play the same action in every
+    // remaining round can return commit(action) instead of the action;
+    // it will then not be asked again for the rest of the match.
+    int commitment = -1;
+
+    // The match's random source, handed over by the engine before the
+    // first round. Strategies draw from it instead of Math.random(), so
+    // that a match with the same seed plays out the same way.
+    MatchRandom random;
+
+    final int commit(int action) {
+        commitment = action;
+        return action;
+    }
+
+    // Used to extract the name of this player class, without the class it
+    // is nested in.
+    final String name() {
+        String result = getClass().getName();
+        return result.substring(Math.max(result.lastIndexOf('.'), result.indexOf('$')) + 1);
+    }
+}
@@ -0,0 +1,59 @@
+package src;
+
+/*
+ * Runs a Player through the Strategy interface. Its decisions are taken from
+ * the MatchState that the engine records every round, so observe() has
+ * nothing to do.
+ */
+final class PlayerAdapter implements Strategy {
+    final Player player;
+    MatchState state;
+    int seat;
+
+    PlayerAdapter(Player player) {
+        this.player = player;
+    }
+
+    void bind(MatchState state, int seat, MatchRandom random) {
+        this.state = state;
+        this.seat = seat;
+        player.random = random;
+        state.registerWindows(seat, player.windows());
+    }
+
+    // Hands the player its own history first and then its opponents' in
+    // cyclic order, as whichever history type it reads.
+    public int decide() {
+        if (player.usesContext())
+            return player.selectAction(state.context(seat));
+        int opp1 = (seat + 1) % 3, opp2 = (seat + 2) % 3;
+        return player.selectAction(state.round(), historyFor(state.history(seat)),
+                historyFor(state.history(opp1)), historyFor(state.history(opp2)));
+    }
+
+    int[] historyFor(HistoryBuffer history) {
+        return player.needsExactHistory() ? history.toArray() : history.array();
+    }
+
+    public void observe(int round, int myAction, int opp1Action, int opp2Action) {
+    }
+
+    public String name() {
+        return player.name();
+    }
+
+    public int memory() {
+        return player.memory();
+    }
+
+    public int commitment() {
+        return player.commitment;
+    }
+
+    public boolean reset() {
+        if (!player.reset())
+            return false;
+        player.commitment = -1;
+        return true;
+    }
+}
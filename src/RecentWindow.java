@@ -0,0 +1,107 @@
+package src;
+
+import java.util.Arrays;
+
+/*
+ * Statistics over the last k rounds of a match as seen from one seat, kept up
+ * to date incrementally: each round the newest round enters the window and,
+ * once k rounds have been played, the oldest one leaves it. Reading any of
+ * them costs O(1) however large k is.
+ *
+ * A strategy asks for the window sizes it needs by overriding windows() in
+ * Player, and reads them through MatchContext.window(k).
+ */
+final class RecentWindow {
+    // Joint outcomes are coded from this seat as (my << 2) | (opp1 << 1) | opp2
+    private static final int PATTERN_OUTCOMES = 21;
+
+    private final int size;
+    private final MatchState state;
+    private final int seat;
+    private final long patternMask;
+
+    private int length = 0;
+    private int myDefections = 0, opp1Defections = 0, opp2Defections = 0;
+    private int defectingRounds = 0;
+    private final int[] outcomes = new int[8];
+    private long pattern = 0;
+
+    RecentWindow(int size, MatchState state, int seat) {
+        if (size <= 0)
+            throw new IllegalArgumentException("Window size must be positive: " + size);
+        this.size = size;
+        this.state = state;
+        this.seat = seat;
+        int kept = Math.min(size, PATTERN_OUTCOMES);
+        this.patternMask = (1L << (3 * kept)) - 1;
+    }
+
+    // Called by MatchState once the given round has been recorded.
+    // Empties the window for a new match.
+    void restart() {
+        length = myDefections = opp1Defections = opp2Defections = defectingRounds = 0;
+        Arrays.fill(outcomes, 0);
+        pattern = 0;
+    }
+
+    void advance(int round) {
+        int entering = outcome(round);
+        add(entering, 1);
+        if (length == size)
+            add(outcome(round - size), -1);
+        else
+            length++;
+        pattern = ((pattern << 3) | entering) & patternMask;
+    }
+
+    private int outcome(int round) {
+        return PayoffTable.rotate(state.outcome(round), seat);
+    }
+
+    private void add(int outcome, int delta) {
+        myDefections += delta * (outcome >>> 2);
+        opp1Defections += delta * ((outcome >>> 1) & 1);
+        opp2Defections += delta * (outcome & 1);
+        if (outcome != 0)
+            defectingRounds += delta;
+        outcomes[outcome] += delta;
+    }
+
+    // The k this window was registered with.
+    int size() {
+        return size;
+    }
+
+    // Number of rounds currently in the window: min(k, rounds played).
+    int length() {
+        return length;
+    }
+
+    int myDefections() {
+        return myDefections;
+    }
+
+    int opp1Defections() {
+        return opp1Defections;
+    }
+
+    int opp2Defections() {
+        return opp2Defections;
+    }
+
+    // True if nobody defected in any round of the window.
+    boolean allCooperated() {
+        return defectingRounds == 0;
+    }
+
+    // Number of rounds in the window with the given joint outcome code.
+    int outcomeCount(int outcome) {
+        return outcomes[outcome];
+    }
+
+    // The joint outcome codes of the most recent min(length(), 21) rounds,
+    // three bits each, with the latest round in the lowest three bits.
+    long pattern() {
+        return pattern;
+    }
+}
@@ -0,0 +1,83 @@
+package src;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/*
+ * The strategies that take part in a tournament, in order, each as a name
+ * and a way of making a fresh copy for every match. A roster is filled in
+ * before the tournament starts and only read afterwards, so one roster can
+ * be shared by any number of threads.
+ *
+ * A driver keeps a catalogue of every strategy it knows. The roster played
+ * can be given in a text file naming strategies from that catalogue, one per
+ * line; anything after a '#' on a line is ignored.
+ */
+final class Roster {
+    private final List<String> names = new ArrayList<>();
+    private final List<Supplier<Strategy>> factories = new ArrayList<>();
+
+    Roster add(String name, Supplier<Strategy> factory) {
+        names.add(name);
+        factories.add(factory);
+        return this;
+    }
+
+    // Adds a Player, which is run through a PlayerAdapter.
+    Roster addPlayer(Supplier<Player> factory) {
+        return add(factory.get().name(), () -> new PlayerAdapter(factory.get()));
+    }
+
+    // Adds a table strategy; see TableStrategy.
+    Roster addTable(TableStrategy strategy) {
+        return add(strategy.name(), strategy::fresh);
+    }
+
+    Roster addAll(Roster other) {
+        names.addAll(other.names);
+        factories.addAll(other.factories);
+        return this;
+    }
+
+    int size() {
+        return names.size();
+    }
+
+    String name(int which) {
+        return names.get(which);
+    }
+
+    // A fresh copy of the given strategy, for one match.
+    Strategy make(int which) {
+        return factories.get(which).get();
+    }
+
+    // The strategies of this roster with the given names, in the order given.
+    Roster select(List<String> wanted) {
+        Roster roster = new Roster();
+        for (String name : wanted) {
+            int which = names.indexOf(name);
+            if (which < 0)
+                throw new IllegalArgumentException("Unknown strategy: " + name);
+            roster.add(name, factories.get(which));
+        }
+        return roster;
+    }
+
+    // The strategies of this roster named in the given file.
+    Roster select(Path file) throws IOException {
+        List<String> wanted = new ArrayList<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            int comment = line.indexOf('#');
+            String name = (comment >= 0 ? line.substring(0, comment) : line).trim();
+            if (!name.isEmpty())
+                wanted.add(name);
+        }
+        return select(wanted);
+    }
+}
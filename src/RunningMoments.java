@@ -0,0 +1,117 @@
+package src;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/*
+ * The running mean, variance, minimum and maximum of one value per player
+ * over a stream of tournaments. Each value is added with Welford's update
+ *
+ *   mean += (x - mean) / n,  m2 += (x - mean_before) * (x - mean_after)
+ *
+ * which never subtracts two large sums, and both accumulators carry a
+ * Neumaier compensation term so the rounding of their many small
+ * increments is not lost either. Two sets of moments over disjoint streams
+ * combine in O(players) by Chan's formula
+ *
+ *   mean = mean_a + d * n_b / n,  m2 = m2_a + m2_b + d^2 * n_a * n_b / n
+ *
+ * with d = mean_b - mean_a. The result depends a little on the order of
+ * adds and merges, which TournamentSeries keeps fixed. The count of values
+ * is not kept here; Standings knows it.
+ */
+final class RunningMoments {
+    private final double[] mean, meanError;
+    private final double[] m2, m2Error;
+    private final double[] min, max;
+
+    RunningMoments(int players) {
+        mean = new double[players];
+        meanError = new double[players];
+        m2 = new double[players];
+        m2Error = new double[players];
+        min = new double[players];
+        max = new double[players];
+        Arrays.fill(min, Double.POSITIVE_INFINITY);
+        Arrays.fill(max, Double.NEGATIVE_INFINITY);
+    }
+
+    // Adds the given player's n-th value.
+    void add(int player, double value, long n) {
+        double before = mean(player);
+        double delta = value - before;
+        addTo(mean, meanError, player, delta / n);
+        addTo(m2, m2Error, player, delta * (value - mean(player)));
+        min[player] = Math.min(min[player], value);
+        max[player] = Math.max(max[player], value);
+    }
+
+    // Adds moments over count values to these over otherCount, in place.
+    void merge(RunningMoments other, long count, long otherCount) {
+        if (otherCount == 0)
+            return;
+        long n = count + otherCount;
+        for (int player = 0; player < mean.length; player++) {
+            double delta = other.mean(player) - mean(player);
+            addTo(mean, meanError, player, delta * otherCount / n);
+            addTo(m2, m2Error, player, other.m2Error[player]);
+            addTo(m2, m2Error, player, other.m2[player]);
+            addTo(m2, m2Error, player, delta * delta * ((double) count * otherCount / n));
+            min[player] = Math.min(min[player], other.min[player]);
+            max[player] = Math.max(max[player], other.max[player]);
+        }
+    }
+
+    // Neumaier's compensated sum += value, for the given player.
+    private static void addTo(double[] sum, double[] error, int player, double value) {
+        double s = sum[player], t = s + value;
+        if (Math.abs(s) >= Math.abs(value))
+            error[player] += (s - t) + value;
+        else
+            error[player] += (value - t) + s;
+        sum[player] = t;
+    }
+
+    double mean(int player) {
+        return mean[player] + meanError[player];
+    }
+
+    // The sample variance over n values, which needs at least two.
+    double variance(int player, long n) {
+        return n < 2 ? 0 : Math.max(0, (m2[player] + m2Error[player]) / (n - 1));
+    }
+
+    double min(int player) {
+        return min[player];
+    }
+
+    double max(int player) {
+        return max[player];
+    }
+
+    void write(DataOutputStream out) throws IOException {
+        for (int player = 0; player < mean.length; player++) {
+            out.writeDouble(mean[player]);
+            out.writeDouble(meanError[player]);
+            out.writeDouble(m2[player]);
+            out.writeDouble(m2Error[player]);
+            out.writeDouble(min[player]);
+            out.writeDouble(max[player]);
+        }
+    }
+
+    static RunningMoments read(DataInputStream in, int players) throws IOException {
+        RunningMoments moments = new RunningMoments(players);
+        for (int player = 0; player < players; player++) {
+            moments.mean[player] = in.readDouble();
+            moments.meanError[player] = in.readDouble();
+            moments.m2[player] = in.readDouble();
+            moments.m2Error[player] = in.readDouble();
+            moments.min[player] = in.readDouble();
+            moments.max[player] = in.readDouble();
+        }
+        return moments;
+    }
+}
@@ -0,0 +1,203 @@
+package src;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/*
+ * Estimates each player's expected score in a tournament directly, rather
+ * than by averaging whole tournaments. That expectation is the sum over the
+ * player's triples of the expected score of each, and most triples do not
+ * depend on chance at all: LengthStrata counts those at their exact
+ * expectation over the match length. Only the random triples are sampled,
+ * each as often as its own variance warrants.
+ *
+ * Sampling has two phases. A pilot of PILOT matches of every random triple
+ * estimates its standard deviation s, the square root of the summed
+ * variances of its players' scores. The rest of the budget is shared out in
+ * proportion to s (Neyman allocation, which minimises the summed variance
+ * of the estimates), with at least two matches each, and each triple's
+ * estimate is the mean of those new matches alone. Since the number of
+ * matches is settled before any of them is played, every mean, and so every
+ * player's estimate, is unbiased; the pilot only decides where to look.
+ *
+ * A triple in which somebody drew a random number need not depend on it: a
+ * strategy may draw for a decision its opponents never let it reach. Such
+ * a triple is still sampled rather than counted exactly on the strength of
+ * a few matches, which would fix a draw that matters only rarely at its
+ * usual result. Its pilot shows no variance, so it only gets the two
+ * matches of the floor, and the triples whose pilot did not vary are
+ * reported separately: if one does depend on chance after all, its share
+ * of the error bars is missing.
+ *
+ * Sample r of triple (i, j, k) is match (i, j, k) of tournament r of a
+ * series with the same seed, at its stratified length (see MatchRandom), so
+ * samples of one triple are independent and have the right distribution of
+ * lengths. Error bars are normal intervals from the sample variances.
+ */
+final class ScoreEstimator {
+    private static final int PILOT = 8;
+
+    private final TournamentEngine engine;
+    private final TripleIndex index;
+    private final LengthStrata strata;
+
+    ScoreEstimator(TournamentEngine engine) {
+        this.engine = engine;
+        this.index = new TripleIndex(engine.numPlayers());
+        this.strata = new LengthStrata(engine.numPlayers());
+    }
+
+    // Estimates with at most the given number of matches, on the given
+    // number of threads, and prints the estimates at the given confidence.
+    void run(long seed, long budget, int workers, int tournaments, double confidence) {
+        int players = engine.numPlayers();
+        ScoreSheet exact = new ScoreSheet(players);
+        List<int[]> random = new ArrayList<>();
+        int[] triple = new int[3];
+        for (long t = 0; t < index.count(); t++) {
+            index.triple(t, triple);
+            long key = MatchRandom.key(seed, 0, triple[0], triple[1], triple[2]);
+            if (!strata.addExpected(engine, t, triple[0], triple[1], triple[2], key, exact))
+                random.add(triple.clone());
+        }
+        long used = strata.played() + (long) PILOT * random.size();
+        if (used + 2L * random.size() > budget)
+            throw new IllegalArgumentException("A budget of " + budget + " matches is too small; this roster needs "
+                    + (used + 2L * random.size()));
+
+        // The pilot
+        long[] pilotSamples = new long[random.size()];
+        Arrays.fill(pilotSamples, PILOT);
+        Sampled[] pilot = sample(random, seed, pilotSamples, 0, workers);
+        double[] deviation = new double[random.size()];
+        double total = 0;
+        int unvaried = 0;
+        for (int r = 0; r < random.size(); r++) {
+            total += deviation[r] = Math.sqrt(pilot[r].variance());
+            if (deviation[r] == 0)
+                unvaried++;
+        }
+
+        // The budget left over, shared out by deviation
+        long left = budget - used, allocated = 0;
+        long[] samples = new long[random.size()];
+        for (int r = 0; r < random.size(); r++) {
+            long share = total > 0 ? (long) (left * deviation[r] / total) : left / random.size();
+            samples[r] = Math.max(2, share);
+            allocated += samples[r];
+        }
+        // Rounding up to 2 may overshoot; take it back from shares that can spare it
+        for (int r = 0; allocated > left && r < random.size(); r++) {
+            long spare = Math.min(samples[r] - 2, allocated - left);
+            samples[r] -= spare;
+            allocated -= spare;
+        }
+        Sampled[] estimates = sample(random, seed, samples, PILOT, workers);
+
+        double[] mean = new double[players], variance = new double[players];
+        for (int player = 0; player < players; player++)
+            mean[player] = exact.score(player);
+        for (int r = 0; r < random.size(); r++)
+            for (int p = 0; p < estimates[r].players.length; p++) {
+                mean[estimates[r].players[p]] += estimates[r].mean(p);
+                variance[estimates[r].players[p]] += estimates[r].variance(p) / samples[r];
+            }
+
+        double z = StoppingRule.normalQuantile(1 - (1 - confidence) / 2);
+        System.out.println("Estimated average score of each player from " + (used + allocated) + " matches, where "
+                + tournaments + " tournaments would play " + tournaments * index.count() + ":");
+        for (int player = 0; player < players; player++)
+            System.out.println(engine.roster.name(player) + ": " + (float) mean[player] + " +/- "
+                    + (float) (z * Math.sqrt(variance[player])));
+        System.out.println("\n" + random.size() + " of " + index.count() + " triples depend on chance; the other "
+                + (index.count() - random.size()) + " are counted exactly. " + unvaried + " of the " + random.size()
+                + " did not vary in the pilot and were given the fewest matches. The intervals are at "
+                + 100 * confidence + "% confidence.");
+    }
+
+    // Plays the given number of samples of each triple, numbered from the
+    // given first one.
+    private Sampled[] sample(List<int[]> triples, long seed, long[] samples, long first, int workers) {
+        Sampled[] result = new Sampled[triples.size()];
+        if (workers <= 1) {
+            for (int r = 0; r < triples.size(); r++)
+                result[r] = sample(triples.get(r), seed, samples[r], first);
+            return result;
+        }
+        ForkJoinPool pool = TournamentTriples.pool(workers);
+        List<ForkJoinTask<Sampled>> tasks = new ArrayList<>();
+        for (int r = 0; r < triples.size(); r++) {
+            int[] triple = triples.get(r);
+            long count = samples[r];
+            tasks.add(pool.submit(() -> sample(triple, seed, count, first)));
+        }
+        for (int r = 0; r < triples.size(); r++)
+            result[r] = tasks.get(r).join();
+        return result;
+    }
+
+    private Sampled sample(int[] triple, long seed, long count, long first) {
+        Sampled sampled = new Sampled(triple);
+        for (long s = first; s < first + count; s++) {
+            long key = MatchRandom.key(seed, s, triple[0], triple[1], triple[2]);
+            int rounds = MatchRandom.stratifiedRounds(seed, s, triple[0], triple[1], triple[2], false);
+            sampled.add(engine.playTriple(triple[0], triple[1], triple[2], rounds, key, false), rounds);
+        }
+        return sampled;
+    }
+
+    // The running sums of the scores of each distinct player of a triple,
+    // counting both seats of a player who has two.
+    private static final class Sampled {
+        final int[] players;
+        private final int[] seatOf = new int[3];
+        private final double[] sum, squares;
+        private final double[] score;
+        private long count;
+
+        Sampled(int[] triple) {
+            int distinct = 1 + (triple[1] != triple[0] ? 1 : 0) + (triple[2] != triple[1] ? 1 : 0);
+            players = new int[distinct];
+            int p = 0;
+            for (int seat = 0; seat < 3; seat++) {
+                if (seat > 0 && triple[seat] != triple[seat - 1])
+                    p++;
+                players[p] = triple[seat];
+                seatOf[seat] = p;
+            }
+            sum = new double[distinct];
+            squares = new double[distinct];
+            score = new double[distinct];
+        }
+
+        void add(int[] totals, int rounds) {
+            Arrays.fill(score, 0);
+            for (int seat = 0; seat < 3; seat++)
+                score[seatOf[seat]] += (double) totals[seat] / rounds;
+            for (int p = 0; p < players.length; p++) {
+                sum[p] += score[p];
+                squares[p] += score[p] * score[p];
+            }
+            count++;
+        }
+
+        double mean(int p) {
+            return sum[p] / count;
+        }
+
+        double variance(int p) {
+            return count < 2 ? 0 : Math.max(0, (squares[p] - count * mean(p) * mean(p)) / (count - 1));
+        }
+
+        // The summed variances of the players' scores
+        double variance() {
+            double total = 0;
+            for (int p = 0; p < players.length; p++)
+                total += variance(p);
+            return total;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package src;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/*
+ * The scores of every player over a set of matches, kept exactly. A match
+ * contributes its total payoff divided by its number of rounds, and adding
+ * those as floats gives a result that depends on the order they are added
+ * in. Instead the integer totals are summed per player and match length,
+ * and only divided out in averages(), so sheets filled in any order or in
+ * any number of pieces and then merged give identical results. A sheet can
+ * be cleared and filled again without reallocating anything.
+ *
+ * A match can also be counted at its expected score over the distribution
+ * of match lengths (see LengthStrata). Its total for each length is then
+ * added weighted by MatchRandom.lengthWeight() into a second table, which
+ * counts in units of 1 / LENGTH_SLOTS and stays just as exact.
+ */
+final class ScoreSheet {
+    // [player][rounds]: total payoff over the player's matches of that length
+    private final long[][] totals;
+    // [player][rounds]: weighted totals of the matches counted at their
+    // expected score, in units of 1 / MatchRandom.LENGTH_SLOTS
+    private final long[][] expected;
+
+    ScoreSheet(int players) {
+        totals = new long[players][0];
+        expected = new long[players][0];
+    }
+
+    void add(int player, int total, int rounds) {
+        add(totals, player, total, rounds);
+    }
+
+    // Adds the weighted total of a match of the given length that is counted
+    // at its expected score.
+    void addExpected(int player, long weightedTotal, int rounds) {
+        add(expected, player, weightedTotal, rounds);
+    }
+
+    private static void add(long[][] table, int player, long total, int rounds) {
+        if (table[player].length <= rounds)
+            table[player] = Arrays.copyOf(table[player], rounds + 1);
+        table[player][rounds] += total;
+    }
+
+    // Sets every total back to 0, keeping the arrays for the next fill.
+    void clear() {
+        for (int player = 0; player < totals.length; player++) {
+            Arrays.fill(totals[player], 0);
+            Arrays.fill(expected[player], 0);
+        }
+    }
+
+    void merge(ScoreSheet other) {
+        merge(totals, other.totals);
+        merge(expected, other.expected);
+    }
+
+    private static void merge(long[][] table, long[][] other) {
+        for (int player = 0; player < table.length; player++) {
+            long[] theirs = other[player];
+            if (table[player].length < theirs.length)
+                table[player] = Arrays.copyOf(table[player], theirs.length);
+            for (int rounds = 0; rounds < theirs.length; rounds++)
+                table[player][rounds] += theirs[rounds];
+        }
+    }
+
+    // Sends the sheet to another process; see DistributedSeries.
+    void write(DataOutputStream out) throws IOException {
+        out.writeInt(totals.length);
+        write(out, totals);
+        write(out, expected);
+    }
+
+    private static void write(DataOutputStream out, long[][] table) throws IOException {
+        for (long[] player : table) {
+            out.writeInt(player.length);
+            for (long total : player)
+                out.writeLong(total);
+        }
+    }
+
+    static ScoreSheet read(DataInputStream in) throws IOException {
+        ScoreSheet sheet = new ScoreSheet(in.readInt());
+        read(in, sheet.totals);
+        read(in, sheet.expected);
+        return sheet;
+    }
+
+    private static void read(DataInputStream in, long[][] table) throws IOException {
+        for (int player = 0; player < table.length; player++) {
+            long[] totals = new long[in.readInt()];
+            for (int rounds = 0; rounds < totals.length; rounds++)
+                totals[rounds] = in.readLong();
+            table[player] = totals;
+        }
+    }
+
+    int players() {
+        return totals.length;
+    }
+
+    // Each player's sum over its matches of total payoff / rounds.
+    float[] averages() {
+        return averages(new float[totals.length]);
+    }
+
+    // The same, stored in the given array, which is returned.
+    float[] averages(float[] result) {
+        for (int player = 0; player < totals.length; player++)
+            result[player] = (float) score(player);
+        return result;
+    }
+
+    // The given player's sum over its matches of total payoff / rounds, with
+    // one rounding per match length.
+    double score(int player) {
+        double sum = 0;
+        for (int rounds = 1; rounds < totals[player].length; rounds++)
+            sum += (double) totals[player][rounds] / rounds;
+        for (int rounds = 1; rounds < expected[player].length; rounds++)
+            sum += (double) expected[player][rounds] / ((long) MatchRandom.LENGTH_SLOTS * rounds);
+        return sum;
+    }
+}
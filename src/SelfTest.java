@@ -0,0 +1,350 @@
+package src;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/*
+ * Checks that the engine still plays every match as the original engine
+ * did, and that the different ways of playing the same thing still give
+ * identical results, which the rest of the program relies on:
+ *
+ *   - every ordered triple of the driver's strategies that never draw, at
+ *     each of GOLDEN_ROUNDS, fast-forwarded and in full, against the hash of
+ *     the scores the original engine gave them (see Golden);
+ *   - each table strategy given with --strategy against the Player it
+ *     stands for in the catalogue, named as the table with "Player" added
+ *     (or "_Rules" replaced by "_Player"), in every seat against every pair
+ *     of catalogue or table strategies;
+ *   - the matches of the roster with and without fast-forward (see
+ *     CycleDetector);
+ *   - BitSlicedEngine against scoresOfMatch, on random tables and on
+ *     matches long enough to need wide counters;
+ *   - a tournament played on the pool against the same one played serially;
+ *   - a series, plain and stratified, on one thread and on several;
+ *   - the matches of a tournament played in the opposite order;
+ *   - a series saved to a Checkpoint and resumed against one played
+ *     straight through;
+ *   - a DistributedSeries with two in-process workers against the series.
+ *
+ * Results are compared exactly: matches by their totals, tournaments by
+ * their scores and series by the bytes their Standings save. Each check
+ * prints one line, and the run fails with an IllegalStateException if any
+ * check did.
+ */
+final class SelfTest {
+    // The match lengths at which the golden triples are played
+    static final int[] GOLDEN_ROUNDS = {90, 97, 104, 110};
+    // Tournaments in each series compared, not a whole number of blocks
+    private static final int SERIES = 3 * TournamentSeries.BLOCK + 5;
+    // Tournaments whose matches are compared one by one
+    private static final int TOURNAMENTS = 4;
+    private static final int BIT_SLICED_BATCHES = 16;
+
+    // Anything that can save itself, compared by what it saves
+    private interface Saving {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    // A driver's strategies that never draw a random number, and the hash
+    // of the scores the original engine gave them, under the driver's own
+    // payoffs. The hash folds in the three scores of each match in turn,
+    // with the first player outermost and the length innermost, so any
+    // score that moves by a single bit changes it.
+    static final class Golden {
+        final PayoffTable payoffs;
+        final long hash;
+        final List<String> names;
+
+        Golden(PayoffTable payoffs, long hash, String... names) {
+            this.payoffs = payoffs;
+            this.hash = hash;
+            this.names = Arrays.asList(names);
+        }
+    }
+
+    private final TournamentEngine engine;
+    private final Roster catalogue, tables;
+    private final Golden golden;
+    private final long seed;
+    private final int workers;
+    private int failed = 0;
+
+    // Checks the given engine and table strategies, with the given seed, on
+    // at least two threads.
+    SelfTest(TournamentEngine engine, Roster catalogue, Roster tables, Golden golden, long seed, int workers) {
+        this.engine = engine;
+        this.catalogue = catalogue;
+        this.tables = tables;
+        this.golden = golden;
+        this.seed = seed;
+        this.workers = Math.max(2, workers);
+    }
+
+    void run() throws IOException, InterruptedException {
+        System.out.println("Self-test with seed " + seed + " on " + workers + " workers:");
+        golden();
+        tablesAgainstPlayers();
+        fastForward();
+        bitSliced();
+        parallelTournament();
+        series(false, "Series");
+        series(true, "Stratified series");
+        reversed();
+        checkpoint();
+        distributed();
+        if (failed > 0)
+            throw new IllegalStateException(failed + " self-test checks failed");
+    }
+
+    private void golden() {
+        for (boolean forward : new boolean[] {true, false}) {
+            TournamentEngine game = new TournamentEngine(catalogue.select(golden.names), golden.payoffs,
+                    forward, false, false, null, false);
+            int players = game.numPlayers(), compared = 0;
+            long hash = 0;
+            for (int i = 0; i < players; i++)
+                for (int j = 0; j < players; j++)
+                    for (int k = 0; k < players; k++)
+                        for (int rounds : GOLDEN_ROUNDS) {
+                            for (float score : game.scoresOfMatch(game.makeStrategy(i), game.makeStrategy(j),
+                                    game.makeStrategy(k), rounds))
+                                hash = 31 * hash + Float.floatToIntBits(score);
+                            compared++;
+                        }
+            report("Deterministic triples against the original engine, "
+                    + (forward ? "fast-forwarded" : "played in full") + " (" + compared + " matches)", 1,
+                    hash == golden.hash ? 0 : 1);
+        }
+    }
+
+    private void tablesAgainstPlayers() {
+        Roster everything = new Roster().addAll(catalogue).addAll(tables);
+        TournamentEngine game = variant(everything, engine.fastForward, false);
+        int compared = 0, differ = 0, pairs = 0;
+        for (int t = 0; t < tables.size(); t++) {
+            int table = catalogue.size() + t;
+            int player = playerFor(tables.name(t));
+            if (player < 0)
+                continue;
+            pairs++;
+            int[] seats = new int[3];
+            for (int seat = 0; seat < 3; seat++)
+                for (int o1 = 0; o1 < everything.size(); o1++)
+                    for (int o2 = 0; o2 < everything.size(); o2++) {
+                        seats[(seat + 1) % 3] = o1;
+                        seats[(seat + 2) % 3] = o2;
+                        seats[seat] = table;
+                        long key = MatchRandom.key(seed, 0, seats[0], seats[1], seats[2]);
+                        int rounds = MatchRandom.rounds(key);
+                        int[] expected = game.probeTriple(seats[0], seats[1], seats[2], rounds, key).clone();
+                        seats[seat] = player;
+                        compared++;
+                        if (!Arrays.equals(expected, game.probeTriple(seats[0], seats[1], seats[2], rounds, key)))
+                            differ++;
+                    }
+        }
+        if (pairs == 0)
+            System.out.println("Table strategies against players: skipped, no --strategy table has a Player"
+                    + " in the catalogue");
+        else
+            report("Table strategies against players (" + pairs + " tables)", compared, differ);
+    }
+
+    // The catalogue's index of the Player that the named table stands for,
+    // or -1.
+    private int playerFor(String table) {
+        String name = table.endsWith("_Rules") ? table.substring(0, table.length() - "_Rules".length()) + "_Player"
+                : table + "Player";
+        for (int which = 0; which < catalogue.size(); which++)
+            if (catalogue.name(which).equals(name))
+                return which;
+        return -1;
+    }
+
+    private void fastForward() {
+        TournamentEngine forward = variant(engine.roster, true, false), full = variant(engine.roster, false, false);
+        TripleIndex index = new TripleIndex(engine.numPlayers());
+        int[] triple = new int[3];
+        int compared = 0, differ = 0;
+        for (long t = 0; t < TOURNAMENTS; t++)
+            for (long at = 0; at < index.count(); at++) {
+                index.triple(at, triple);
+                long key = MatchRandom.key(seed, t, triple[0], triple[1], triple[2]);
+                int rounds = MatchRandom.rounds(key);
+                int[] expected = full.probeTriple(triple[0], triple[1], triple[2], rounds, key).clone();
+                compared++;
+                if (!Arrays.equals(expected, forward.probeTriple(triple[0], triple[1], triple[2], rounds, key)))
+                    differ++;
+            }
+        report("Fast-forward against full matches", compared, differ);
+    }
+
+    private void bitSliced() {
+        Random random = new Random(seed);
+        int memory = 2, lanes = BitSlicedEngine.LANES;
+        TableStrategy[] roster = new TableStrategy[32];
+        for (int s = 0; s < roster.length; s++) {
+            int own = random.nextInt(memory + 1);
+            byte[] opening = new byte[own], table = new byte[1 << (3 * own)];
+            for (int round = 0; round < own; round++)
+                opening[round] = (byte) random.nextInt(2);
+            for (int entry = 0; entry < table.length; entry++)
+                table[entry] = (byte) random.nextInt(2);
+            roster[s] = new TableStrategy("Random" + s, own, opening, table);
+        }
+        BitSlicedEngine sliced = new BitSlicedEngine(engine.payoffs, memory);
+        TournamentEngine scalar = variant(new Roster(), false, false);
+        TableStrategy[][] seats = new TableStrategy[3][lanes];
+        int[] rounds = new int[lanes];
+        float[][] scores = new float[lanes][3];
+        int compared = 0, differ = 0;
+        for (int batch = 0; batch <= BIT_SLICED_BATCHES; batch++) {
+            for (int l = 0; l < lanes; l++) {
+                for (int seat = 0; seat < 3; seat++)
+                    seats[seat][l] = roster[random.nextInt(roster.length)];
+                // The last batch is long enough to need counters of 17 bits
+                rounds[l] = batch < BIT_SLICED_BATCHES ? 90 + random.nextInt(21) : 65536 + random.nextInt(1000);
+            }
+            sliced.play(seats[0], seats[1], seats[2], rounds, scores);
+            for (int l = 0; l < lanes; l++) {
+                compared++;
+                if (!Arrays.equals(scores[l], scalar.scoresOfMatch(seats[0][l].fresh(), seats[1][l].fresh(),
+                        seats[2][l].fresh(), rounds[l])))
+                    differ++;
+            }
+        }
+        report("Bit-sliced against scalar matches", compared, differ);
+    }
+
+    private void parallelTournament() {
+        int differ = 0;
+        for (long t = 0; t < TOURNAMENTS; t++) {
+            float[] serial = engine.playTriples(seed, t, 1);
+            if (!Arrays.equals(serial, engine.playTriples(seed, t, workers)))
+                differ++;
+        }
+        report("Tournaments on the pool against serial ones", TOURNAMENTS, differ);
+    }
+
+    // Each run gets an engine of its own, so that the parallel one cannot
+    // lean on what the serial one worked out.
+    private void series(boolean stratify, String name) throws IOException {
+        TournamentEngine serial = variant(engine.roster, engine.fastForward, stratify);
+        TournamentEngine parallel = variant(engine.roster, engine.fastForward, stratify);
+        byte[] expected = bytes(play(serial, new Standings(engine.numPlayers()), 1)::write);
+        report(name + " on " + workers + " workers against one", 1,
+                Arrays.equals(expected, bytes(play(parallel, new Standings(engine.numPlayers()), workers)::write))
+                        ? 0 : 1);
+    }
+
+    private void reversed() {
+        TripleIndex index = new TripleIndex(engine.numPlayers());
+        int compared = 0, differ = 0;
+        for (long t = 0; t < TOURNAMENTS; t++) {
+            List<int[]> totals = new ArrayList<>();
+            for (long at = 0; at < index.count(); at++)
+                totals.add(playTriple(index, at, t));
+            for (long at = index.count() - 1; at >= 0; at--) {
+                compared++;
+                if (!Arrays.equals(totals.get((int) at), playTriple(index, at, t)))
+                    differ++;
+            }
+        }
+        report("Matches played in reverse order against in order", compared, differ);
+    }
+
+    private int[] playTriple(TripleIndex index, long at, long tournament) {
+        int[] triple = new int[3];
+        index.triple(at, triple);
+        long key = MatchRandom.key(seed, tournament, triple[0], triple[1], triple[2]);
+        return engine.probeTriple(triple[0], triple[1], triple[2], MatchRandom.rounds(key), key).clone();
+    }
+
+    private void checkpoint() throws IOException {
+        Path file = Files.createTempFile("self-test", ".checkpoint");
+        try {
+            Checkpoint checkpoint = new Checkpoint(file, SERIES);
+            Standings half = TournamentSeries.play(engine, new Standings(engine.numPlayers()),
+                    2 * TournamentSeries.BLOCK, seed, 1, null, null);
+            checkpoint.save(seed, half);
+            Checkpoint.Saved saved = checkpoint.load();
+            Standings resumed = play(engine, saved.standings, workers);
+            byte[] straight = bytes(play(engine, new Standings(engine.numPlayers()), 1)::write);
+            report("Resumed checkpoint against a series played straight through", 1,
+                    saved.seed == seed && Arrays.equals(straight, bytes(resumed::write)) ? 0 : 1);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private void distributed() throws IOException, InterruptedException {
+        int port;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        List<Thread> helpers = new ArrayList<>();
+        for (int w = 0; w < 2; w++) {
+            Thread helper = new Thread(() -> {
+                // The coordinator may not be listening yet
+                for (int attempt = 0; attempt < 100; attempt++)
+                    try {
+                        DistributedSeries.work(engine, "localhost", port, 1);
+                        return;
+                    } catch (ConnectException e) {
+                        try {
+                            Thread.sleep(50);
+                        } catch (InterruptedException interrupted) {
+                            return;
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+            });
+            helper.setDaemon(true);
+            helper.start();
+            helpers.add(helper);
+        }
+        Standings coordinated = new DistributedSeries(engine, SERIES, seed, 3, 60_000).coordinate(port);
+        for (Thread helper : helpers)
+            helper.join();
+        byte[] serial = bytes(play(engine, new Standings(engine.numPlayers()), 1)::write);
+        report("Distributed series against one process", 1, Arrays.equals(serial, bytes(coordinated::write)) ? 0 : 1);
+    }
+
+    private Standings play(TournamentEngine game, Standings start, int threads) throws IOException {
+        return TournamentSeries.play(game, start, SERIES, seed, threads, null, null);
+    }
+
+    // An engine like the one under test, quiet and unmeasured, over the
+    // given roster.
+    private TournamentEngine variant(Roster roster, boolean fastForward, boolean stratify) {
+        return new TournamentEngine(roster, engine.payoffs, fastForward, false, engine.costs != null, null, stratify);
+    }
+
+    private static byte[] bytes(Saving saving) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(buffer)) {
+            saving.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+
+    private void report(String check, int compared, int differ) {
+        if (differ > 0)
+            failed++;
+        System.out.println(check + ": " + (differ == 0 ? "ok" : "FAILED, " + differ + " of " + compared + " differ")
+                + (compared > 1 ? " (" + compared + " compared)" : ""));
+    }
+}
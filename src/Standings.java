@@ -0,0 +1,292 @@
+package src;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/*
+ * What main reports over a series of tournaments: each player's summed
+ * score, summed finishing position (0 for first), how often it finished in
+ * each position, and the variance, minimum and maximum of its scores and
+ * positions. The summed scores are kept as a ScoreSheet of integer totals
+ * that is only divided out when an average is asked for, so they and the
+ * position counts are exact in any order of add() and merge(). The
+ * variances come from RunningMoments, which also follow the difference
+ * between the scores of every two players, so that the variance of a
+ * difference takes into account that the two players' scores come from the
+ * same tournaments (see StoppingRule).
+ *
+ * A tournament is ranked by sorting the players' scores as longs, in
+ * O(n log n), and adding it allocates nothing once every player's
+ * histogram has room for its positions. Following the differences takes
+ * O(n^2) per tournament, which is still small next to the O(n^3) matches
+ * of the tournament itself. Merging takes time in proportion to the pairs
+ * of players and the distinct positions in the merged Standings.
+ */
+final class Standings {
+    private final ScoreSheet score;
+    private final long[] position;
+    private final Histogram[] positions;
+    private final RunningMoments scoreMoments;
+    private final RunningMoments positionMoments;
+    // [pair(a, b)] for a < b: the score of a minus the score of b
+    private final RunningMoments differenceMoments;
+    private int tournaments = 0;
+    // Scratch space for ranking a tournament
+    private final float[] tournamentScore;
+    private final long[] sortedOrder;
+
+    Standings(int players) {
+        this(new ScoreSheet(players), new RunningMoments(players), new RunningMoments(players),
+                new RunningMoments(pairs(players)));
+    }
+
+    private Standings(ScoreSheet score, RunningMoments scoreMoments, RunningMoments positionMoments,
+            RunningMoments differenceMoments) {
+        int players = score.players();
+        this.score = score;
+        this.scoreMoments = scoreMoments;
+        this.positionMoments = positionMoments;
+        this.differenceMoments = differenceMoments;
+        position = new long[players];
+        positions = new Histogram[players];
+        for (int player = 0; player < players; player++)
+            positions[player] = new Histogram();
+        tournamentScore = new float[players];
+        sortedOrder = new long[players];
+    }
+
+    // Adds the scores of one tournament, ranking the players by their scores
+    // in it. Ties keep the lower-numbered player ahead.
+    void add(ScoreSheet sheet) {
+        int players = position.length;
+        float[] tournament = sheet.averages(tournamentScore);
+        // Higher scores first, then lower-numbered players first
+        for (int player = 0; player < players; player++)
+            sortedOrder[player] = ((long) ~sortable(tournament[player]) << 32) | player;
+        Arrays.sort(sortedOrder);
+        tournaments++;
+        for (int j = 0; j < players; j++) {
+            int player = (int) sortedOrder[j];
+            position[player] += j;
+            positions[player].add(j, 1);
+            scoreMoments.add(player, tournament[player], tournaments);
+            positionMoments.add(player, j, tournaments);
+        }
+        for (int a = 0, pair = 0; a < players; a++)
+            for (int b = a + 1; b < players; b++)
+                differenceMoments.add(pair++, (double) tournament[a] - tournament[b], tournaments);
+        score.merge(sheet);
+    }
+
+    private static int pairs(int players) {
+        return players * (players - 1) / 2;
+    }
+
+    // The index of the pair of players a < b among all pairs, in the order
+    // add() visits them.
+    private int pair(int a, int b) {
+        return a * (2 * position.length - a - 1) / 2 + b - a - 1;
+    }
+
+    // A float's bits as an int that orders the same way as the float.
+    private static int sortable(float value) {
+        int bits = Float.floatToIntBits(value);
+        return bits ^ ((bits >> 31) & 0x7FFFFFFF);
+    }
+
+    void merge(Standings other) {
+        score.merge(other.score);
+        scoreMoments.merge(other.scoreMoments, tournaments, other.tournaments);
+        positionMoments.merge(other.positionMoments, tournaments, other.tournaments);
+        differenceMoments.merge(other.differenceMoments, tournaments, other.tournaments);
+        for (int player = 0; player < position.length; player++) {
+            position[player] += other.position[player];
+            positions[player].merge(other.positions[player]);
+        }
+        tournaments += other.tournaments;
+    }
+
+    // Saves the standings exactly; see Checkpoint.
+    void write(DataOutputStream out) throws IOException {
+        score.write(out);
+        out.writeInt(tournaments);
+        for (int player = 0; player < position.length; player++) {
+            out.writeLong(position[player]);
+            positions[player].write(out);
+        }
+        scoreMoments.write(out);
+        positionMoments.write(out);
+        differenceMoments.write(out);
+    }
+
+    static Standings read(DataInputStream in) throws IOException {
+        ScoreSheet score = ScoreSheet.read(in);
+        int tournaments = in.readInt();
+        long[] position = new long[score.players()];
+        Histogram[] positions = new Histogram[score.players()];
+        for (int player = 0; player < position.length; player++) {
+            position[player] = in.readLong();
+            positions[player] = Histogram.read(in);
+        }
+        Standings standings = new Standings(score, RunningMoments.read(in, position.length),
+                RunningMoments.read(in, position.length), RunningMoments.read(in, pairs(position.length)));
+        standings.tournaments = tournaments;
+        System.arraycopy(position, 0, standings.position, 0, position.length);
+        System.arraycopy(positions, 0, standings.positions, 0, position.length);
+        return standings;
+    }
+
+    int players() {
+        return position.length;
+    }
+
+    int tournaments() {
+        return tournaments;
+    }
+
+    float averageScore(int player) {
+        return (float) meanScore(player);
+    }
+
+    double meanScore(int player) {
+        return score.score(player) / tournaments;
+    }
+
+    // Counting first place as 1
+    float averagePosition(int player) {
+        return (float) ((double) position[player] / tournaments + 1);
+    }
+
+    // The sample variance of the player's score over the tournaments, which
+    // needs at least two of them.
+    double scoreVariance(int player) {
+        return scoreMoments.variance(player, tournaments);
+    }
+
+    // The sample variance of the difference between two players' scores,
+    // which is var(a) + var(b) - 2 cov(a, b).
+    double differenceVariance(int a, int b) {
+        if (a == b)
+            return 0;
+        return differenceMoments.variance(pair(Math.min(a, b), Math.max(a, b)), tournaments);
+    }
+
+    double positionVariance(int player) {
+        return positionMoments.variance(player, tournaments);
+    }
+
+    double minScore(int player) {
+        return scoreMoments.min(player);
+    }
+
+    double maxScore(int player) {
+        return scoreMoments.max(player);
+    }
+
+    int firstPlaces(int player) {
+        return (int) positions[player].count(0);
+    }
+
+    // How many times the player finished in the given position, counting
+    // first place as 0.
+    long timesIn(int player, int position) {
+        return positions[player].count(position);
+    }
+
+    // The positions the player has finished in, best first.
+    int[] positionsOf(int player) {
+        return positions[player].positions();
+    }
+
+    // How often one player finished in each position, in an open-addressing
+    // table, so that it only takes room for the positions that came up.
+    private static final class Histogram {
+        private static final int EMPTY = -1;
+
+        private int[] keys = emptyTable(4);
+        private long[] counts = new long[4];
+        private int size = 0;
+
+        void add(int position, long count) {
+            int slot = slot(keys, position);
+            if (keys[slot] == EMPTY) {
+                if (2 * (size + 1) > keys.length) {
+                    grow();
+                    slot = slot(keys, position);
+                }
+                keys[slot] = position;
+                size++;
+            }
+            counts[slot] += count;
+        }
+
+        long count(int position) {
+            int slot = slot(keys, position);
+            return keys[slot] == EMPTY ? 0 : counts[slot];
+        }
+
+        void merge(Histogram other) {
+            for (int slot = 0; slot < other.keys.length; slot++)
+                if (other.keys[slot] != EMPTY)
+                    add(other.keys[slot], other.counts[slot]);
+        }
+
+        int[] positions() {
+            int[] result = new int[size];
+            int n = 0;
+            for (int key : keys)
+                if (key != EMPTY)
+                    result[n++] = key;
+            Arrays.sort(result);
+            return result;
+        }
+
+        // Writes the counts in order of position, so that equal histograms
+        // are written alike however their tables were filled.
+        void write(DataOutputStream out) throws IOException {
+            out.writeInt(size);
+            for (int position : positions()) {
+                out.writeInt(position);
+                out.writeLong(count(position));
+            }
+        }
+
+        static Histogram read(DataInputStream in) throws IOException {
+            Histogram histogram = new Histogram();
+            for (int n = in.readInt(); n > 0; n--)
+                histogram.add(in.readInt(), in.readLong());
+            return histogram;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            long[] oldCounts = counts;
+            keys = emptyTable(2 * oldKeys.length);
+            counts = new long[2 * oldKeys.length];
+            for (int slot = 0; slot < oldKeys.length; slot++)
+                if (oldKeys[slot] != EMPTY) {
+                    int to = slot(keys, oldKeys[slot]);
+                    keys[to] = oldKeys[slot];
+                    counts[to] = oldCounts[slot];
+                }
+        }
+
+        // The slot holding the given position, or the empty slot where it
+        // would go. The table's length is a power of two.
+        private static int slot(int[] keys, int position) {
+            int mask = keys.length - 1;
+            int slot = ((position * 0x9E3779B9) >>> 16) & mask;
+            while (keys[slot] != EMPTY && keys[slot] != position)
+                slot = (slot + 1) & mask;
+            return slot;
+        }
+
+        private static int[] emptyTable(int length) {
+            int[] keys = new int[length];
+            Arrays.fill(keys, EMPTY);
+            return keys;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package src;
+
+import java.util.Arrays;
+
+/*
+ * Decides when a series of tournaments has run long enough for its ranking
+ * to be trusted, so that TournamentSeries can stop before its budget. The
+ * players are ranked by average score, and the ranking is settled once the
+ * difference between every two neighbours in it is at least z standard
+ * errors, where the standard error of a difference of means is
+ *
+ *   sqrt(var(a - b) / tournaments),  var(a - b) = var(a) + var(b) - 2 cov(a, b)
+ *
+ * and z is the normal quantile for the given confidence, split evenly over
+ * the n - 1 neighbouring pairs. Both players play in the same tournaments,
+ * against the same opponents and largely in the same matches, so their
+ * scores are not independent; var(a - b) is the variance of the difference
+ * per tournament, which Standings follows for every pair. Two players whose
+ * difference has not varied at all are settled whether they differ or tie
+ * exactly, as identical deterministic strategies do.
+ *
+ * The rule is checked again after every block of the series, so the
+ * confidence is a guide rather than an exact guarantee. Checking only at
+ * block boundaries keeps the point where a series stops, and so its
+ * result, the same for any number of workers.
+ */
+final class StoppingRule {
+    // Below this many tournaments the variances mean too little
+    private static final int MINIMUM = 2 * TournamentSeries.BLOCK;
+
+    private final double confidence;
+    private final double critical;
+
+    // A rule for the given number of players at the given confidence,
+    // strictly between 0 and 1.
+    StoppingRule(double confidence, int players) {
+        if (!(confidence > 0 && confidence < 1))
+            throw new IllegalArgumentException("The confidence must be between 0 and 1: " + confidence);
+        this.confidence = confidence;
+        this.critical = normalQuantile(1 - (1 - confidence) / (2 * Math.max(1, players - 1)));
+    }
+
+    double confidence() {
+        return confidence;
+    }
+
+    // The number of standard errors that separates two neighbours.
+    double critical() {
+        return critical;
+    }
+
+    boolean settled(Standings standings) {
+        int n = standings.tournaments(), players = standings.players();
+        if (n < MINIMUM)
+            return false;
+        Integer[] ranking = new Integer[players];
+        for (int player = 0; player < players; player++)
+            ranking[player] = player;
+        Arrays.sort(ranking, (a, b) -> Double.compare(standings.meanScore(b), standings.meanScore(a)));
+        for (int r = 1; r < players; r++) {
+            int above = ranking[r - 1], below = ranking[r];
+            double difference = standings.meanScore(above) - standings.meanScore(below);
+            double error = Math.sqrt(standings.differenceVariance(above, below) / n);
+            if (error > 0 && difference < critical * error)
+                return false;
+        }
+        return true;
+    }
+
+    // The half-width of the interval around a mean with the given variance
+    // over the given number of tournaments.
+    double halfWidth(double variance, int tournaments) {
+        return critical * Math.sqrt(variance / tournaments);
+    }
+
+    // The p-quantile of the standard normal distribution, by Acklam's
+    // rational approximation (relative error below 1.2e-9).
+    static double normalQuantile(double p) {
+        final double[] a = {-3.969683028665376e+01, 2.209460984245205e+02, -2.759285104469687e+02,
+                1.383577518672690e+02, -3.066479806614716e+01, 2.506628277459239e+00};
+        final double[] b = {-5.447609879822406e+01, 1.615858368580409e+02, -1.556989798598866e+02,
+                6.680131188771972e+01, -1.328068155288572e+01};
+        final double[] c = {-7.784894002430293e-03, -3.223964580411365e-01, -2.400758277161838e+00,
+                -2.549732539343734e+00, 4.374664141464968e+00, 2.938163982698783e+00};
+        final double[] d = {7.784695709041462e-03, 3.224671290700398e-01, 2.445134137142996e+00,
+                3.754408661907416e+00};
+        if (p < 0.02425) {
+            double q = Math.sqrt(-2 * Math.log(p));
+            return (((((c[0] * q + c[1]) * q + c[2]) * q + c[3]) * q + c[4]) * q + c[5])
+                    / ((((d[0] * q + d[1]) * q + d[2]) * q + d[3]) * q + 1);
+        }
+        if (p > 1 - 0.02425)
+            return -normalQuantile(1 - p);
+        double q = p - 0.5, r = q * q;
+        return (((((a[0] * r + a[1]) * r + a[2]) * r + a[3]) * r + a[4]) * r + a[5]) * q
+                / (((((b[0] * r + b[1]) * r + b[2]) * r + b[3]) * r + b[4]) * r + 1);
+    }
+}
@@ -0,0 +1,52 @@
+package src;
+
+/*
+ * The event-driven alternative to Player.selectAction. Instead of being handed
+ * the match histories before every round, a Strategy is told what happened
+ * after each round and keeps whatever state it needs itself:
+ *
+ *   decide()  is called before each round and returns 0 to cooperate or 1 to
+ *             defect;
+ *   observe() is called after each round with the round number (0-based) and
+ *             the actions just played, its own first and then its opponents'
+ *             in the same order as the selectAction arguments.
+ *
+ * The engine keeps no histories for a match in which all three players are
+ * Strategies. Player subclasses are run through a PlayerAdapter, which
+ * TournamentEngine binds to the MatchState that the thread's MatchWorkspace
+ * keeps for them.
+ */
+interface Strategy {
+    int decide();
+
+    void observe(int round, int myAction, int opp1Action, int opp2Action);
+
+    // The name reported in the tournament results.
+    String name();
+
+    // The number of previous rounds m this strategy looks at, for a strategy
+    // whose decide() is a deterministic function of the joint outcomes of the
+    // last m rounds once m rounds have been played; -1 for any other. The
+    // engine uses it to fast-forward matches that settle into a cycle (see
+    // CycleDetector).
+    default int memory() {
+        return -1;
+    }
+
+    // The action this strategy has committed to play in every remaining round
+    // of the match, or -1 while it has not committed. Once it returns an
+    // action the engine plays it without calling decide() or observe() again,
+    // and when all three players are committed it finishes the match without
+    // playing the remaining rounds.
+    default int commitment() {
+        return -1;
+    }
+
+    // Puts this strategy back in the state of a fresh copy, so that the
+    // engine can play its next match with it instead of making a new one.
+    // Returns false for a strategy that cannot be reused, which the engine
+    // then replaces every match.
+    default boolean reset() {
+        return false;
+    }
+}
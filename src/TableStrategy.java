@@ -0,0 +1,352 @@
+package src;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * A memory-k strategy compiled to a lookup table. After the first k rounds,
+ * which are played from a fixed opening, the action is read from a byte[]
+ * indexed by
+ *
+ *   (conditions << 3k) | recent
+ *
+ * where recent holds the joint outcome codes of the last k rounds as seen
+ * from this seat, (my << 2) | (opp1 << 1) | opp2, three bits each with the
+ * latest round lowest (as in RecentWindow.pattern()), and bit c of
+ * conditions is whether condition c currently holds. A condition compares
+ * one counter with a threshold: the round number or the number of
+ * defections so far by me, opp1, opp2 or both opponents together.
+ *
+ * Strategies are written in a small line-based format, or built the same
+ * way with a Builder:
+ *
+ *   name Naing_Htet_Rules
+ *   memory 1
+ *   opening C
+ *   condition late round >= 96
+ *   condition provoked opponents >= 1
+ *   *** if late -> D
+ *   CCC -> C
+ *   *** if provoked -> D
+ *   default C
+ *
+ * A rule is a pattern over the last k rounds, oldest first, with three of
+ * C, D or * per round for my action and my opponents'; whitespace inside
+ * the pattern is ignored and an empty pattern matches anything. It may be
+ * followed by "if" and the names of conditions that must hold, prefixed
+ * with '!' for ones that must not. Rules are tried in order and the first
+ * that matches decides; "default" gives the action when none does. Anything
+ * after a '#' on a line is ignored.
+ *
+ * The compiled table, opening and conditions are shared by every copy made
+ * with fresh(), so a tournament can hold thousands of table strategies and
+ * start a match with any of them for the price of one small object, or for
+ * nothing once the engine reuses the copy through reset(). Only the
+ * definition is serialized; the state of a match in progress is not.
+ */
+final class TableStrategy implements Strategy, Serializable {
+    private static final long serialVersionUID = 1L;
+
+    static final int MAX_MEMORY = 6;
+    static final int MAX_CONDITIONS = 4;
+
+    static final int ROUND = 0, MY = 1, OPP1 = 2, OPP2 = 3, OPPONENTS = 4;
+    private static final String[] COUNTERS = {"round", "my", "opp1", "opp2", "opponents"};
+
+    private final String name;
+    private final int memory;
+    private final byte[] opening;
+    private final byte[] table;
+    // Condition c holds when counter[c] >= threshold[c], or < if atLeast[c] is 0
+    private final int[] counter;
+    private final int[] threshold;
+    private final int[] atLeast;
+
+    // The match in progress; counts[ROUND] is the number of rounds played
+    private transient int[] counts;
+    private transient int recent;
+
+    // A strategy without conditions from its raw table of 8^memory actions
+    TableStrategy(String name, int memory, byte[] opening, byte[] table) {
+        this(name, memory, opening, table, new int[0], new int[0], new int[0]);
+    }
+
+    private TableStrategy(String name, int memory, byte[] opening, byte[] table,
+                          int[] counter, int[] threshold, int[] atLeast) {
+        if (memory < 0 || memory > MAX_MEMORY)
+            throw new IllegalArgumentException("Memory must be between 0 and " + MAX_MEMORY + ": " + memory);
+        if (opening.length != memory)
+            throw new IllegalArgumentException("The opening must have one action per round of memory");
+        if (table.length != 1 << (3 * memory + counter.length))
+            throw new IllegalArgumentException("The table must have " + (1 << (3 * memory + counter.length)) + " entries");
+        this.name = name;
+        this.memory = memory;
+        this.opening = opening;
+        this.table = table;
+        this.counter = counter;
+        this.threshold = threshold;
+        this.atLeast = atLeast;
+        this.counts = new int[COUNTERS.length];
+    }
+
+    // A copy ready to play a new match, sharing this one's compiled table.
+    TableStrategy fresh() {
+        return new TableStrategy(name, memory, opening, table, counter, threshold, atLeast);
+    }
+
+    public int decide() {
+        int round = counts[ROUND];
+        if (round < memory)
+            return opening[round];
+        int index = recent;
+        for (int c = 0; c < counter.length; c++)
+            index |= (((counts[counter[c]] - threshold[c]) >>> 31) ^ atLeast[c]) << (3 * memory + c);
+        return table[index];
+    }
+
+    public void observe(int round, int myAction, int opp1Action, int opp2Action) {
+        recent = ((recent << 3) | (myAction << 2) | (opp1Action << 1) | opp2Action) & ((1 << (3 * memory)) - 1);
+        counts[ROUND] = round + 1;
+        counts[MY] += myAction;
+        counts[OPP1] += opp1Action;
+        counts[OPP2] += opp2Action;
+        counts[OPPONENTS] += opp1Action + opp2Action;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public boolean reset() {
+        Arrays.fill(counts, 0);
+        recent = 0;
+        return true;
+    }
+
+    // Only a strategy without conditions is a function of the last k rounds
+    // alone.
+    public int memory() {
+        return counter.length == 0 ? memory : -1;
+    }
+
+    int tableMemory() {
+        return memory;
+    }
+
+    int conditions() {
+        return counter.length;
+    }
+
+    // The action played in the given round of the opening (round < memory).
+    int opening(int round) {
+        return opening[round];
+    }
+
+    // The action for the given table index; see the comment at the top.
+    int action(int index) {
+        return table[index];
+    }
+
+    private void readObject(java.io.ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        counts = new int[COUNTERS.length];
+    }
+
+    static TableStrategy load(Path file) throws IOException {
+        return parse(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+    }
+
+    static TableStrategy parse(String text) {
+        Builder builder = null;
+        String name = null;
+        int number = 0;
+        for (String line : text.split("\n")) {
+            number++;
+            int comment = line.indexOf('#');
+            if (comment >= 0)
+                line = line.substring(0, comment);
+            line = line.trim();
+            if (line.isEmpty())
+                continue;
+            String[] words = line.split("\\s+");
+            try {
+                if (words[0].equals("name")) {
+                    name = line.substring(4).trim();
+                } else if (words[0].equals("memory")) {
+                    if (builder != null)
+                        throw new IllegalArgumentException("memory must come before everything but the name");
+                    builder = new Builder(Integer.parseInt(words[1]));
+                } else if (builder == null) {
+                    throw new IllegalArgumentException("memory must come before everything but the name");
+                } else if (words[0].equals("opening")) {
+                    builder.opening(line.substring(7).replaceAll("\\s", ""));
+                } else if (words[0].equals("condition")) {
+                    if (words.length != 5)
+                        throw new IllegalArgumentException("Expected: condition <name> <counter> >=|< <number>");
+                    builder.condition(words[1], words[2], words[3], Integer.parseInt(words[4]));
+                } else if (words[0].equals("default")) {
+                    builder.otherwise(action(words[1]));
+                } else {
+                    int arrow = line.indexOf("->");
+                    if (arrow < 0)
+                        throw new IllegalArgumentException("Expected a rule: <pattern> [if <conditions>] -> C|D");
+                    String[] left = line.substring(0, arrow).trim().split("\\s+");
+                    StringBuilder pattern = new StringBuilder();
+                    List<String> conditions = new ArrayList<>();
+                    boolean inConditions = false;
+                    for (String word : left) {
+                        if (word.equals("if"))
+                            inConditions = true;
+                        else if (inConditions)
+                            conditions.add(word);
+                        else
+                            pattern.append(word);
+                    }
+                    builder.rule(pattern.toString(), action(line.substring(arrow + 2).trim()),
+                            conditions.toArray(new String[0]));
+                }
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Line " + number + ": " + e.getMessage(), e);
+            }
+        }
+        if (builder == null)
+            throw new IllegalArgumentException("A table strategy needs a memory line");
+        if (name != null)
+            builder.name(name);
+        return builder.build();
+    }
+
+    private static int action(String word) {
+        if (word.equals("C"))
+            return 0;
+        if (word.equals("D"))
+            return 1;
+        throw new IllegalArgumentException("An action is C or D: " + word);
+    }
+
+    /*
+     * Builds a TableStrategy from the same parts as the text format: an
+     * opening, named conditions and rules tried in order, each with its
+     * action as 0 (cooperate) or 1 (defect).
+     */
+    static final class Builder {
+        private final int memory;
+        private String name = "TableStrategy";
+        private byte[] opening;
+        private int otherwise = 0;
+        private final Map<String, Integer> conditionIndex = new HashMap<>();
+        private final List<int[]> conditions = new ArrayList<>();
+        // Per rule: {care mask, value, condition mask, condition value, action}
+        private final List<int[]> rules = new ArrayList<>();
+
+        Builder(int memory) {
+            if (memory < 0 || memory > MAX_MEMORY)
+                throw new IllegalArgumentException("Memory must be between 0 and " + MAX_MEMORY + ": " + memory);
+            this.memory = memory;
+            this.opening = new byte[memory];
+        }
+
+        Builder name(String name) {
+            this.name = name;
+            return this;
+        }
+
+        // One of C or D per opening round, or a single one for all of them.
+        Builder opening(String actions) {
+            if (actions.length() == 1)
+                actions = new String(new char[memory]).replace('\0', actions.charAt(0));
+            if (actions.length() != memory)
+                throw new IllegalArgumentException("The opening needs " + memory + " actions: " + actions);
+            for (int round = 0; round < memory; round++)
+                opening[round] = (byte) action(String.valueOf(actions.charAt(round)));
+            return this;
+        }
+
+        Builder condition(String name, String counter, String comparison, int threshold) {
+            if (conditionIndex.containsKey(name))
+                throw new IllegalArgumentException("Condition defined twice: " + name);
+            if (conditions.size() == MAX_CONDITIONS)
+                throw new IllegalArgumentException("At most " + MAX_CONDITIONS + " conditions");
+            int which = -1;
+            for (int c = 0; c < COUNTERS.length; c++)
+                if (COUNTERS[c].equals(counter))
+                    which = c;
+            if (which < 0)
+                throw new IllegalArgumentException("Unknown counter: " + counter);
+            if (!comparison.equals(">=") && !comparison.equals("<"))
+                throw new IllegalArgumentException("A condition compares with >= or <: " + comparison);
+            conditionIndex.put(name, conditions.size());
+            conditions.add(new int[] {which, threshold, comparison.equals(">=") ? 1 : 0});
+            return this;
+        }
+
+        Builder rule(String pattern, int action, String... conditionNames) {
+            pattern = pattern.replaceAll("\\s", "");
+            if (pattern.isEmpty())
+                pattern = new String(new char[3 * memory]).replace('\0', '*');
+            if (pattern.length() != 3 * memory)
+                throw new IllegalArgumentException("A pattern has 3 actions per round of memory: " + pattern);
+            int care = 0, value = 0;
+            for (int p = 0; p < pattern.length(); p++) {
+                char symbol = pattern.charAt(p);
+                int bit = 1 << (3 * memory - 1 - p);
+                if (symbol == 'C' || symbol == 'D')
+                    care |= bit;
+                if (symbol == 'D')
+                    value |= bit;
+                else if (symbol != 'C' && symbol != '*')
+                    throw new IllegalArgumentException("A pattern holds C, D or *: " + pattern);
+            }
+            int conditionCare = 0, conditionValue = 0;
+            for (String condition : conditionNames) {
+                boolean negated = condition.startsWith("!");
+                Integer c = conditionIndex.get(negated ? condition.substring(1) : condition);
+                if (c == null)
+                    throw new IllegalArgumentException("Unknown condition: " + condition);
+                conditionCare |= 1 << c;
+                if (!negated)
+                    conditionValue |= 1 << c;
+            }
+            rules.add(new int[] {care, value, conditionCare, conditionValue, action});
+            return this;
+        }
+
+        // The action when no rule matches.
+        Builder otherwise(int action) {
+            this.otherwise = action;
+            return this;
+        }
+
+        TableStrategy build() {
+            int bits = 3 * memory;
+            byte[] table = new byte[1 << (bits + conditions.size())];
+            for (int index = 0; index < table.length; index++) {
+                int recent = index & ((1 << bits) - 1), held = index >>> bits;
+                int action = otherwise;
+                for (int[] rule : rules)
+                    if ((recent & rule[0]) == rule[1] && (held & rule[2]) == rule[3]) {
+                        action = rule[4];
+                        break;
+                    }
+                table[index] = (byte) action;
+            }
+            int[] counter = new int[conditions.size()];
+            int[] threshold = new int[conditions.size()];
+            int[] atLeast = new int[conditions.size()];
+            for (int c = 0; c < conditions.size(); c++) {
+                counter[c] = conditions.get(c)[0];
+                threshold[c] = conditions.get(c)[1];
+                atLeast[c] = conditions.get(c)[2];
+            }
+            return new TableStrategy(name, memory, opening.clone(), table, counter, threshold, atLeast);
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package src;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+
+/*
+ * The main program shared by ThreePrisonersDilemma and
+ * CustomThreePrisonersDilemma. It plays and prints one tournament, then
+ * plays a series of tournaments and prints each player's average score,
+ * average position and number of first places. Options:
+ *
+ *   --payoff <file>        the payoff matrix; see PayoffTable
+ *   --roster <file>        the strategies to play, named from the driver's
+ *                          catalogue; see Roster
+ *   --strategy <file>      adds a table strategy; see TableStrategy
+ *   --no-fast-forward      plays cycling matches out in full
+ *   --workers <n>          threads to play on; how busy they were is
+ *                          reported on standard error
+ *   --equal-split          splits the matches of a tournament over the
+ *                          workers in equal numbers rather than by cost
+ *   --stratify             counts matches that do not depend on chance at
+ *                          their exact expected score over the match length
+ *                          and plays the rest at stratified lengths; see
+ *                          LengthStrata
+ *   --seed <n>             the master seed; see MatchRandom
+ *   --tournaments <n>      the length of the series, 1000 by default
+ *   --confidence <p>       stops the series as soon as the ranking is settled
+ *                          at this confidence, e.g. 0.95, playing at most
+ *                          --tournaments; see StoppingRule
+ *   --distribution         also prints each player's lowest and highest
+ *                          score and how often it finished in each position
+ *   --replay <t> <i> <j> <k>  plays just that match of the run
+ *   --verbose              prints the scores of every match
+ *   --compare <a> <b>      plays the series once with strategy a and once
+ *                          with strategy b added to the roster and prints
+ *                          the paired differences; see Comparison
+ *   --antithetic           pairs every compared tournament with its
+ *                          antithetic twin
+ *   --estimate <matches>   estimates each player's expected score from at
+ *                          most this many matches, sampling only the
+ *                          triples that depend on chance; see ScoreEstimator
+ *   --coordinator <port>   hands the series out to worker processes; see
+ *                          DistributedSeries
+ *   --split <n>            triple ranges per tournament for the workers
+ *   --worker-timeout <s>   seconds the coordinator waits for a worker's
+ *                          result before giving its range to another, 600
+ *                          by default
+ *   --worker <host:port>   plays ranges for a coordinator
+ *   --checkpoint <file>    saves the progress of the series; see Checkpoint
+ *   --checkpoint-every <n> tournaments between checkpoints, 1000 by default
+ *   --resume               continues the series saved in the checkpoint,
+ *                          with the seed saved there
+ *   --verify-allocation <bytes>  fails the run if a match between
+ *                          strategies that can be reused allocates more,
+ *                          even when played again; see AllocationCheck
+ *   --self-test            checks that the engine still plays as the
+ *                          original one did, and that the ways of playing
+ *                          the same series that should agree exactly still
+ *                          do; see SelfTest
+ */
+final class TournamentDriver {
+    private TournamentDriver() {
+    }
+
+    static void run(String[] args, PayoffTable payoffs, Roster catalogue, Roster roster, SelfTest.Golden golden)
+            throws IOException, InterruptedException {
+        boolean fastForward = true, verbose = false, schedule = true, stratify = false;
+        // The results are the same for any number of workers, given the same seed.
+        int workers = 1;
+        long seed = new Random().nextLong();
+        int numTournaments = 1000;
+        double confidence = 0;
+        boolean distribution = false;
+        int[] replay = null;
+        String[] compare = null;
+        boolean antithetic = false;
+        long estimate = 0;
+        int coordinatorPort = -1, split = 1, workerTimeout = 600;
+        String coordinator = null;
+        Path checkpointFile = null;
+        int checkpointEvery = 1000;
+        boolean resume = false, selfTest = false;
+        AllocationCheck allocations = null;
+        Roster tables = new Roster();
+
+        for (int a = 0; a < args.length; a++) {
+            if (args[a].equals("--payoff"))
+                payoffs = PayoffTable.load(Paths.get(args[++a]));
+            else if (args[a].equals("--roster"))
+                roster = catalogue.select(Paths.get(args[++a]));
+            else if (args[a].equals("--strategy"))
+                tables.addTable(TableStrategy.load(Paths.get(args[++a])));
+            else if (args[a].equals("--no-fast-forward"))
+                fastForward = false;
+            else if (args[a].equals("--workers"))
+                workers = Integer.parseInt(args[++a]);
+            else if (args[a].equals("--equal-split"))
+                schedule = false;
+            else if (args[a].equals("--stratify"))
+                stratify = true;
+            else if (args[a].equals("--seed"))
+                seed = Long.parseLong(args[++a]);
+            else if (args[a].equals("--tournaments"))
+                numTournaments = Integer.parseInt(args[++a]);
+            else if (args[a].equals("--confidence"))
+                confidence = Double.parseDouble(args[++a]);
+            else if (args[a].equals("--distribution"))
+                distribution = true;
+            else if (args[a].equals("--replay")) {
+                replay = new int[4];
+                for (int r = 0; r < 4; r++)
+                    replay[r] = Integer.parseInt(args[++a]);
+            } else if (args[a].equals("--verbose"))
+                verbose = true;
+            else if (args[a].equals("--compare"))
+                compare = new String[] {args[++a], args[++a]};
+            else if (args[a].equals("--antithetic"))
+                antithetic = true;
+            else if (args[a].equals("--estimate"))
+                estimate = Long.parseLong(args[++a]);
+            else if (args[a].equals("--coordinator"))
+                coordinatorPort = Integer.parseInt(args[++a]);
+            else if (args[a].equals("--split"))
+                split = Integer.parseInt(args[++a]);
+            else if (args[a].equals("--worker-timeout"))
+                workerTimeout = Integer.parseInt(args[++a]);
+            else if (args[a].equals("--worker"))
+                coordinator = args[++a];
+            else if (args[a].equals("--checkpoint"))
+                checkpointFile = Paths.get(args[++a]);
+            else if (args[a].equals("--checkpoint-every"))
+                checkpointEvery = Integer.parseInt(args[++a]);
+            else if (args[a].equals("--resume"))
+                resume = true;
+            else if (args[a].equals("--verify-allocation"))
+                allocations = new AllocationCheck(Long.parseLong(args[++a]));
+            else if (args[a].equals("--self-test"))
+                selfTest = true;
+            else
+                throw new IllegalArgumentException("Unknown argument: " + args[a]);
+        }
+
+        // Table strategies join the tournament after the rest of the roster
+        Roster players = new Roster().addAll(roster).addAll(tables);
+        TournamentEngine engine = new TournamentEngine(players, payoffs, fastForward, verbose, schedule, allocations, stratify);
+
+        StoppingRule rule = confidence == 0 ? null : new StoppingRule(confidence, engine.numPlayers());
+        if (rule != null && coordinatorPort >= 0)
+            throw new IllegalArgumentException("--confidence cannot be used with --coordinator");
+        if (compare != null && numTournaments < 2)
+            throw new IllegalArgumentException("--compare needs at least 2 tournaments to estimate a variance");
+        Checkpoint checkpoint = checkpointFile == null ? null : new Checkpoint(checkpointFile, checkpointEvery);
+        Standings start = new Standings(engine.numPlayers());
+        if (resume) {
+            if (checkpoint == null)
+                throw new IllegalArgumentException("--resume needs --checkpoint <file>");
+            Checkpoint.Saved saved = checkpoint.load();
+            int done = saved.standings.tournaments();
+            if (saved.standings.players() != engine.numPlayers())
+                throw new IllegalArgumentException("The checkpoint has " + saved.standings.players() + " players");
+            if (done > numTournaments || (done % TournamentSeries.BLOCK != 0 && done != numTournaments))
+                throw new IllegalArgumentException("The checkpoint of " + done + " tournaments cannot be continued to "
+                        + numTournaments);
+            seed = saved.seed;
+            start = saved.standings;
+        }
+
+        if (selfTest) {
+            new SelfTest(engine, catalogue, tables, golden, seed, workers).run();
+            return;
+        }
+        if (replay != null) {
+            engine.replayMatch(seed, replay[0], replay[1], replay[2], replay[3]);
+            return;
+        }
+        if (compare != null) {
+            // The variants can be any strategy of the catalogue or a table strategy
+            Roster everything = new Roster().addAll(catalogue).addAll(tables);
+            TournamentEngine[] variants = new TournamentEngine[2];
+            for (int v = 0; v < 2; v++)
+                variants[v] = new TournamentEngine(
+                        new Roster().addAll(players).addAll(everything.select(Arrays.asList(compare[v]))),
+                        payoffs, fastForward, verbose, schedule, allocations, stratify);
+            new Comparison(variants[0], variants[1]).run(seed, numTournaments, workers, antithetic,
+                    confidence == 0 ? 0.95 : confidence);
+            return;
+        }
+        if (estimate > 0) {
+            new ScoreEstimator(engine).run(seed, estimate, workers, numTournaments, confidence == 0 ? 0.95 : confidence);
+            return;
+        }
+        long wallStart = System.nanoTime(), busyStart = TournamentTriples.busyNanos();
+        if (coordinator != null) {
+            int colon = coordinator.lastIndexOf(':');
+            DistributedSeries.work(engine, coordinator.substring(0, colon),
+                    Integer.parseInt(coordinator.substring(colon + 1)), workers);
+            reportUtilization(workers, wallStart, busyStart);
+            if (allocations != null)
+                allocations.verify();
+            return;
+        }
+
+        // Run the tournament numTournaments times and get the average score of each player and the average position of the player
+        Standings standings;
+        if (coordinatorPort >= 0) {
+            // Tournament 0 of the series is the one printed first
+            DistributedSeries series = new DistributedSeries(engine, numTournaments, seed, split,
+                    1000L * workerTimeout);
+            standings = series.coordinate(coordinatorPort);
+            if (series.first() != null)
+                engine.printTournament(series.first());
+        } else {
+            engine.runTournament(seed, workers);
+            standings = TournamentSeries.play(engine, start, numTournaments, seed, workers, checkpoint, rule);
+            reportUtilization(workers, wallStart, busyStart);
+        }
+        int played = standings.tournaments();
+        if (rule != null) {
+            if (rule.settled(standings))
+                System.out.println("\nThe ranking was settled at " + 100 * confidence + "% confidence after " + played
+                        + " of at most " + numTournaments + " tournaments.");
+            else
+                System.out.println("\nThe ranking was not settled at " + 100 * confidence + "% confidence within "
+                        + numTournaments + " tournaments.");
+        }
+
+        System.out.println("\nAverage score of each player after " + played + " tournaments:");
+        for (int i = 0; i < engine.numPlayers(); i++) {
+            System.out.println(players.name(i) + ": " + standings.averageScore(i)
+                    + (rule == null ? "" : " +/- " + (float) rule.halfWidth(standings.scoreVariance(i), played)));
+        }
+
+        System.out.println("\nAverage position of each player after " + played + " tournaments:");
+        for (int i = 0; i < engine.numPlayers(); i++) {
+            System.out.println(players.name(i) + ": " + standings.averagePosition(i)
+                    + (rule == null ? "" : " +/- " + (float) rule.halfWidth(standings.positionVariance(i), played)));
+        }
+
+        System.out.println("\nNumber of times each player finished in 1st place:");
+        for (int i = 0; i < engine.numPlayers(); i++) {
+            System.out.println(players.name(i) + ": " + standings.firstPlaces(i));
+        }
+
+        if (distribution) {
+            System.out.println("\nScore range and finishing positions of each player after " + played
+                    + " tournaments:");
+            for (int i = 0; i < engine.numPlayers(); i++) {
+                StringBuilder line = new StringBuilder(players.name(i)).append(": ")
+                        .append((float) standings.minScore(i)).append(" to ").append((float) standings.maxScore(i));
+                line.append("; positions");
+                for (int position : standings.positionsOf(i))
+                    line.append(' ').append(position + 1).append(':').append(standings.timesIn(i, position));
+                System.out.println(line);
+            }
+        }
+        if (allocations != null)
+            allocations.verify();
+    }
+
+    // Reports on standard error how much of the time since the given start
+    // the workers spent playing matches.
+    private static void reportUtilization(int workers, long wallStart, long busyStart) {
+        double wall = System.nanoTime() - wallStart, busy = TournamentTriples.busyNanos() - busyStart;
+        System.err.printf("Core utilization: %.1f%% of %d workers over %.2f s (%d cores available)%n",
+                100 * busy / (wall * workers), workers, wall / 1e9, Runtime.getRuntime().availableProcessors());
+    }
+}
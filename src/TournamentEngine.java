@@ -0,0 +1,274 @@
+package src;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/*
+ * Plays matches and tournaments between the strategies of a Roster, for
+ * both ThreePrisonersDilemma and CustomThreePrisonersDilemma. Everything an
+ * engine is configured with is fixed when it is created and every thread
+ * plays its matches in a MatchWorkspace of its own, so one engine can be
+ * shared by all the threads of a run.
+ */
+final class TournamentEngine implements TournamentTriples.Game, TournamentSeries.Tournament {
+    final Roster roster;
+    final PayoffTable payoffs;
+
+    // Matches between strategies that declare a finite memory are cut short
+    // once they settle into a cycle; the results are identical either way.
+    final boolean fastForward;
+
+    // Prints the scores of every match. With more than one worker the lines
+    // come out in whatever order the matches finish.
+    final boolean verbose;
+
+    // What each strategy costs to play, so that the matches of a tournament
+    // can be spread evenly over the workers; null to split them in equal
+    // numbers instead. See TournamentTriples.
+    final CostModel costs;
+
+    // Measures what every match allocates, or null not to
+    final AllocationCheck allocations;
+
+    // The exact expected scores of deterministic triples, or null to play
+    // every triple at its drawn length. See LengthStrata.
+    final LengthStrata strata;
+
+    private final ThreadLocal<MatchWorkspace> workspaces;
+
+    TournamentEngine(Roster roster, PayoffTable payoffs, boolean fastForward, boolean verbose, boolean schedule,
+            AllocationCheck allocations, boolean stratify) {
+        this.roster = roster;
+        this.payoffs = payoffs;
+        this.fastForward = fastForward;
+        this.verbose = verbose;
+        this.costs = schedule ? new CostModel(roster.size()) : null;
+        this.allocations = allocations;
+        this.strata = stratify ? new LengthStrata(roster.size()) : null;
+        this.workspaces = ThreadLocal.withInitial(() -> new MatchWorkspace(roster.size()));
+    }
+
+    public CostModel costs() {
+        return costs;
+    }
+
+    public LengthStrata strata() {
+        return strata;
+    }
+
+    public boolean drew() {
+        return workspaces.get().drew;
+    }
+
+    int numPlayers() {
+        return roster.size();
+    }
+
+    Strategy makeStrategy(int which) {
+        return roster.make(which);
+    }
+
+    /* In our tournament, each pair of strategies will play one match against each other.
+     This procedure simulates a single match and returns the scores. */
+    float[] scoresOfMatch(Strategy A, Strategy B, Strategy C, int rounds) {
+        int[] totals = totalsOfMatch(A, B, C, rounds, new MatchRandom(ThreadLocalRandom.current().nextLong()));
+        float[] result = {(float) totals[0] / rounds, (float) totals[1] / rounds, (float) totals[2] / rounds};
+        return result;
+    }
+
+    // The same match, returning the total payoff of each player rather than
+    // the average per round. Players draw any random numbers from the given
+    // source.
+    int[] totalsOfMatch(Strategy A, Strategy B, Strategy C, int rounds, MatchRandom random) {
+        return totalsOfMatch(A, B, C, rounds, random, new MatchWorkspace(0));
+    }
+
+    // The same, in the given workspace, whose totals are returned.
+    int[] totalsOfMatch(Strategy A, Strategy B, Strategy C, int rounds, MatchRandom random, MatchWorkspace space) {
+        MatchState State = bindPlayers(rounds, random, space, A, B, C);
+        // Each round is reduced to its 3-bit joint outcome code; the scores
+        // are only worked out from the outcome counts once the match is over.
+        int[] OutcomeCounts = space.counts;
+        Arrays.fill(OutcomeCounts, 0);
+        CycleDetector Cycle = fastForward ? space.detector(rounds, A, B, C) : null;
+
+        for (int i = 0; i < rounds; i++) {
+            if (Cycle != null && Cycle.repeats(i)) {
+                Cycle.fastForward(i, rounds, OutcomeCounts);
+                break;
+            }
+            int CommitA = A.commitment(), CommitB = B.commitment(), CommitC = C.commitment();
+            if (CommitA >= 0 && CommitB >= 0 && CommitC >= 0) {
+                // Nothing can change any more
+                OutcomeCounts[PayoffTable.outcome(CommitA, CommitB, CommitC)] += rounds - i;
+                break;
+            }
+            int PlayA = CommitA >= 0 ? CommitA : A.decide();
+            int PlayB = CommitB >= 0 ? CommitB : B.decide();
+            int PlayC = CommitC >= 0 ? CommitC : C.decide();
+            int Outcome = PayoffTable.outcome(PlayA, PlayB, PlayC);
+            OutcomeCounts[Outcome]++;
+            if (Cycle != null)
+                Cycle.record(i, Outcome);
+            if (State != null)
+                State.record(Outcome);
+            if (CommitA < 0)
+                A.observe(i, PlayA, PlayB, PlayC);
+            if (CommitB < 0)
+                B.observe(i, PlayB, PlayC, PlayA);
+            if (CommitC < 0)
+                C.observe(i, PlayC, PlayA, PlayB);
+        }
+        space.drew = State != null && (space.seats[0].drawn() || space.seats[1].drawn() || space.seats[2].drawn());
+        int[] result = space.totals;
+        result[0] = payoffs.total(OutcomeCounts, 0);
+        result[1] = payoffs.total(OutcomeCounts, 1);
+        result[2] = payoffs.total(OutcomeCounts, 2);
+        return result;
+    }
+
+    // This is a helper function needed by scoresOfMatch.
+    // The Players wrapped in PlayerAdapters share one MatchState, restarted
+    // from the thread's MatchWorkspace rather than created for each match.
+    // Returns null if there are no such Players. Each seat draws from a
+    // stream of its own split from the match's random source.
+    MatchState bindPlayers(int rounds, MatchRandom random, MatchWorkspace space, Strategy A, Strategy B, Strategy C) {
+        if (!(A instanceof PlayerAdapter || B instanceof PlayerAdapter || C instanceof PlayerAdapter))
+            return null;
+        for (int seat = 0; seat < 3; seat++)
+            random.split(space.seats[seat]);
+        // The int[] histories are only kept if some player still reads them
+        boolean arrays = readsArrays(A) || readsArrays(B) || readsArrays(C);
+        MatchState state = space.state(rounds, payoffs, arrays);
+        bind(state, 0, A, space);
+        bind(state, 1, B, space);
+        bind(state, 2, C, space);
+        return state;
+    }
+
+    private static boolean readsArrays(Strategy strategy) {
+        return strategy instanceof PlayerAdapter && !((PlayerAdapter) strategy).player.usesContext();
+    }
+
+    private static void bind(MatchState state, int seat, Strategy strategy, MatchWorkspace space) {
+        if (strategy instanceof PlayerAdapter)
+            ((PlayerAdapter) strategy).bind(state, seat, space.seats[seat]);
+        else
+            state.registerWindows(seat, null);
+    }
+
+    // Plays one match of a tournament in the calling thread's workspace,
+    // with each player reset or freshly made. The totals returned belong to
+    // the workspace and are overwritten by the thread's next match.
+    public int[] playTriple(int i, int j, int k, int rounds, long key, boolean antithetic) {
+        return playTriple(i, j, k, rounds, key, antithetic, true);
+    }
+
+    // The same match, neither printed nor measured.
+    public int[] probeTriple(int i, int j, int k, int rounds, long key) {
+        return playTriple(i, j, k, rounds, key, false, false);
+    }
+
+    private int[] playTriple(int i, int j, int k, int rounds, long key, boolean antithetic, boolean counted) {
+        long before = counted && allocations != null ? allocations.allocated() : 0;
+        MatchWorkspace space = workspaces.get();
+        space.reused();
+        int[] totals = playMatch(space, i, j, k, rounds, key, antithetic);
+        if (counted && allocations != null) {
+            long bytes = allocations.allocated() - before;
+            boolean steady = space.reused();
+            if (steady && bytes > allocations.limit) {
+                // The JIT compiler allocates on the playing thread when it
+                // compiles in the middle of a match, so the match is played
+                // again, the same way, before it counts against the limit
+                before = allocations.allocated();
+                totals = playMatch(space, i, j, k, rounds, key, antithetic);
+                bytes = allocations.allocated() - before;
+                steady = space.reused();
+                allocations.retried();
+            }
+            allocations.record(steady, bytes);
+        }
+        if (counted && verbose)
+            System.out.println(roster.name(i) + " scored " + (float) totals[0] / rounds + " points, " + roster.name(j)
+                    + " scored " + (float) totals[1] / rounds + " points, and " + roster.name(k) + " scored "
+                    + (float) totals[2] / rounds + " points.");
+        return totals;
+    }
+
+    private int[] playMatch(MatchWorkspace space, int i, int j, int k, int rounds, long key, boolean antithetic) {
+        Strategy A = space.strategy(roster, 0, i);
+        Strategy B = space.strategy(roster, 1, j);
+        Strategy C = space.strategy(roster, 2, k);
+        space.random.reseed(key, antithetic);
+        return totalsOfMatch(A, B, C, rounds, space.random, space);
+    }
+
+    // Plays each triple of players against each other in the given
+    // tournament of the run with the given seed, using the given number of
+    // threads, and returns each player's total score. Note that we include
+    // duplicates: two copies of your strategy will play once against each
+    // other strategy, and three copies of your strategy will play once.
+    float[] playTriples(long seed, long tournament, int workers) {
+        return new TournamentTriples(numPlayers(), seed, tournament).play(this, workers).averages();
+    }
+
+    // One tournament of a series. The series already keeps the workers busy,
+    // so its matches are played in order, into the calling thread's
+    // ScoreSheet, which its next tournament overwrites.
+    public ScoreSheet runTournamentOnce(long seed, long tournament) {
+        return runTournamentOnce(seed, tournament, false);
+    }
+
+    // The same tournament with every random draw complemented if antithetic.
+    ScoreSheet runTournamentOnce(long seed, long tournament, boolean antithetic) {
+        TournamentTriples triples = new TournamentTriples(numPlayers(), seed, tournament, antithetic);
+        ScoreSheet sheet = workspaces.get().sheet;
+        sheet.clear();
+        triples.play(this, 0, triples.index().count(), sheet);
+        return sheet;
+    }
+
+    // Plays tournament 0 of the run with the given seed and prints the
+    // players sorted by score.
+    void runTournament(long seed, int workers) {
+        printTournament(playTriples(seed, 0, workers));
+    }
+
+    // Prints the players sorted by their scores in one tournament.
+    void printTournament(float[] totalScore) {
+        int numPlayers = numPlayers();
+        int[] sortedOrder = new int[numPlayers];
+        // This loop sorts the players by their score.
+        for (int i = 0; i < numPlayers; i++) {
+            int j = i - 1;
+            for (; j >= 0; j--) {
+                if (totalScore[i] > totalScore[sortedOrder[j]])
+                    sortedOrder[j + 1] = sortedOrder[j];
+                else
+                    break;
+            }
+            sortedOrder[j + 1] = i;
+        }
+
+        // Finally, print out the sorted results.
+        if (verbose)
+            System.out.println();
+        System.out.println("Tournament Results");
+        for (int i = 0; i < numPlayers; i++)
+            System.out.println(roster.name(sortedOrder[i]) + ": " + totalScore[sortedOrder[i]] + " points.");
+
+    } // end of printTournament()
+
+    // Plays match (i, j, k) of the given tournament exactly as the run with
+    // the given seed plays it, and prints the scores.
+    void replayMatch(long seed, int tournament, int i, int j, int k) {
+        long key = MatchRandom.key(seed, tournament, i, j, k);
+        int rounds = MatchRandom.rounds(key);
+        int[] totals = playTriple(i, j, k, rounds, key, false);
+        System.out.println("Tournament " + tournament + ", " + rounds + " rounds: " + roster.name(i)
+                + " scored " + (float) totals[0] / rounds + " points, " + roster.name(j) + " scored "
+                + (float) totals[1] / rounds + " points, and " + roster.name(k) + " scored "
+                + (float) totals[2] / rounds + " points.");
+    }
+}
@@ -0,0 +1,78 @@
+package src;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/*
+ * Plays a series of tournaments and collects their Standings. Every match
+ * of tournament t is keyed by the master seed, t and its triple (see
+ * MatchRandom), so it does not matter which thread plays it or when. The
+ * series is cut into blocks of BLOCK tournaments, whatever the number of
+ * workers; each block is played in order into Standings of its own, and the
+ * blocks are
+ * merged in order at the end. The result therefore depends only on the
+ * master seed and the number of tournaments, or with a StoppingRule the
+ * budget and confidence.
+ */
+final class TournamentSeries {
+    // Plays the given tournament of a run with the given master seed and
+    // returns each player's scores, in a sheet that may be reused once the
+    // next tournament is played on the same thread.
+    interface Tournament {
+        ScoreSheet runTournamentOnce(long seed, long tournament);
+    }
+
+    static final int BLOCK = 16;
+
+    private TournamentSeries() {
+    }
+
+    // Plays the series from where the given Standings leave off, which must
+    // be after a whole number of blocks, and adds to them. The Standings are
+    // saved to the checkpoint, if there is one, as the blocks come in. With
+    // a StoppingRule the series ends after the first block at which the rule
+    // holds, or at the given number of tournaments if it never does.
+    static Standings play(Tournament tournament, Standings total, int tournaments, long seed, int workers,
+            Checkpoint checkpoint, StoppingRule rule) throws IOException {
+        int players = total.players();
+        ForkJoinPool pool = workers > 1 ? TournamentTriples.pool(workers) : null;
+        // Blocks submitted ahead of the one being merged. Without a rule
+        // that is all of them; with one only a few, so that little is
+        // wasted once it holds.
+        int ahead = pool == null ? 0 : rule == null ? Integer.MAX_VALUE : 2 * workers;
+        Deque<ForkJoinTask<Standings>> blocks = new ArrayDeque<>();
+        int next = total.tournaments();
+        while (rule == null || !rule.settled(total)) {
+            while (blocks.size() < ahead && next < tournaments) {
+                int start = next, end = Math.min(tournaments, next + BLOCK);
+                blocks.add(pool.submit(() -> play(tournament, players, start, end, seed)));
+                next = end;
+            }
+            if (!blocks.isEmpty())
+                total.merge(blocks.remove().join());
+            else if (next < tournaments) {
+                int end = Math.min(tournaments, next + BLOCK);
+                total.merge(play(tournament, players, next, end, seed));
+                next = end;
+            } else
+                break;
+            if (checkpoint != null)
+                checkpoint.reached(seed, total, tournaments);
+        }
+        for (ForkJoinTask<Standings> block : blocks)
+            block.cancel(false);
+        if (checkpoint != null && total.tournaments() < tournaments)
+            checkpoint.save(seed, total);
+        return total;
+    }
+
+    private static Standings play(Tournament tournament, int players, int from, int to, long seed) {
+        Standings standings = new Standings(players);
+        for (int t = from; t < to; t++)
+            standings.add(tournament.runTournamentOnce(seed, t));
+        return standings;
+    }
+}
@@ -0,0 +1,308 @@
+package src;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * The matches of one tournament: every triple i <= j <= k of players,
+ * numbered by a TripleIndex in the order of the nested loops that used to
+ * play them. The length and random draws of each match follow from its key
+ * (see MatchRandom), which is worked out when the match is played. Since
+ * nothing about a match depends on when it is played, any range of triple
+ * indices can be played on its own, and a range can be split across a
+ * work-stealing pool. Each piece of work fills a ScoreSheet of its own and
+ * the sheets are merged as the pieces are joined, which gives exactly the
+ * scores of playing them one after another.
+ *
+ * Strategies differ a lot in what a round costs, so equal pieces of a range
+ * do not take equal time. When the game keeps a CostModel, the matches are
+ * instead estimated from it, sorted longest first and packed greedily into
+ * the least loaded piece, and the heaviest pieces are started first. If the
+ * model has not timed anything yet, a short stretch at the start of the
+ * range is played in equal pieces first to train it.
+ *
+ * When the game keeps LengthStrata, triples whose result is a fixed
+ * function of the match length are counted at their expected score, and
+ * the rest are played at stratified lengths.
+ */
+final class TournamentTriples {
+    // Plays the match between players i, j and k, which take seats 0, 1 and
+    // 2, with a MatchRandom started from the given key, antithetic or not,
+    // and returns the total payoff of each seat.
+    interface Game {
+        int[] playTriple(int i, int j, int k, int rounds, long key, boolean antithetic);
+
+        // The same match played only to find out about the triple rather
+        // than as one of a tournament, so it is not printed or measured.
+        default int[] probeTriple(int i, int j, int k, int rounds, long key) {
+            return playTriple(i, j, k, rounds, key, false);
+        }
+
+        // The model that matches are timed into and scheduled by, or null to
+        // split ranges evenly.
+        default CostModel costs() {
+            return null;
+        }
+
+        // The exact expectations over the match length to count triples at,
+        // or null to play every triple at its drawn length.
+        default LengthStrata strata() {
+            return null;
+        }
+
+        // Whether any player drew a random number in the last match the
+        // calling thread played. A game that cannot tell says so.
+        default boolean drew() {
+            return true;
+        }
+    }
+
+    // Pieces of work per worker, so that workers that finish early can
+    // steal from the others
+    private static final int PIECES_PER_WORKER = 8;
+    // Matches per worker played to train an untrained CostModel
+    private static final int TRAINING_PER_WORKER = 64;
+    private static ForkJoinPool pool;
+    // CPU time spent playing matches, summed over all threads
+    private static final LongAdder busy = new LongAdder();
+    private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    private final int players;
+    private final TripleIndex index;
+    private final long seed;
+    private final long tournament;
+    private final boolean antithetic;
+
+    // The triples of the given tournament between the given number of
+    // players in a run with the given master seed.
+    TournamentTriples(int players, long seed, long tournament) {
+        this(players, seed, tournament, false);
+    }
+
+    // The same, with every random draw complemented if antithetic; see
+    // MatchRandom.
+    TournamentTriples(int players, long seed, long tournament, boolean antithetic) {
+        this.players = players;
+        this.index = new TripleIndex(players);
+        this.seed = seed;
+        this.tournament = tournament;
+        this.antithetic = antithetic;
+    }
+
+    TripleIndex index() {
+        return index;
+    }
+
+    // Plays every triple using the given number of threads; with one they are
+    // played in order on the calling thread.
+    ScoreSheet play(Game game, int workers) {
+        return play(game, 0, index.count(), workers);
+    }
+
+    // Plays the triples with indices in [from, to).
+    ScoreSheet play(Game game, long from, long to, int workers) {
+        if (workers <= 1)
+            return play(game, from, to);
+        CostModel costs = game.costs();
+        if (costs == null || to - from > Integer.MAX_VALUE)
+            return split(game, from, to, workers);
+        ScoreSheet sheet = new ScoreSheet(players);
+        if (!costs.trained()) {
+            long trained = Math.min(to, from + (long) workers * TRAINING_PER_WORKER);
+            sheet.merge(split(game, from, trained, workers));
+            from = trained;
+        }
+        sheet.merge(packed(game, costs, from, to, workers));
+        return sheet;
+    }
+
+    private ScoreSheet split(Game game, long from, long to, int workers) {
+        long grain = Math.max(1, (to - from) / (workers * PIECES_PER_WORKER));
+        return pool(workers).invoke(new Piece(this, game, from, to, grain));
+    }
+
+    private ScoreSheet play(Game game, long from, long to) {
+        long start = threads.getCurrentThreadCpuTime();
+        ScoreSheet sheet = new ScoreSheet(players);
+        CostModel costs = game.costs();
+        CostModel.Sample sample = costs == null ? null : costs.sample();
+        play(game, from, to, sheet, sample);
+        if (sample != null)
+            costs.merge(sample);
+        busy.add(threads.getCurrentThreadCpuTime() - start);
+        return sheet;
+    }
+
+    // Plays the triples with indices in [from, to) in order on the calling
+    // thread and adds their scores to the given sheet. The matches are not
+    // timed into the game's CostModel, and once the sheet has seen every
+    // match length nothing is allocated per match.
+    void play(Game game, long from, long to, ScoreSheet sheet) {
+        long start = threads.getCurrentThreadCpuTime();
+        play(game, from, to, sheet, null);
+        busy.add(threads.getCurrentThreadCpuTime() - start);
+    }
+
+    private void play(Game game, long from, long to, ScoreSheet sheet, CostModel.Sample sample) {
+        if (from >= to)
+            return;
+        int[] triple = new int[3];
+        index.triple(from, triple);
+        for (long t = from; t < to; t++) {
+            play(game, t, triple, sheet, sample);
+            index.next(triple);
+        }
+    }
+
+    // Plays the given triple, which has the given index.
+    private void play(Game game, long at, int[] triple, ScoreSheet sheet, CostModel.Sample sample) {
+        long key = MatchRandom.key(seed, tournament, triple[0], triple[1], triple[2]);
+        LengthStrata strata = game.strata();
+        if (strata != null && strata.addExpected(game, at, triple[0], triple[1], triple[2], key, sheet))
+            return;
+        int rounds = rounds(key, triple, strata != null);
+        long start = sample == null ? 0 : System.nanoTime();
+        int[] totals = game.playTriple(triple[0], triple[1], triple[2], rounds, key, antithetic);
+        if (sample != null)
+            sample.record(triple[0], triple[1], triple[2], rounds, System.nanoTime() - start);
+        for (int seat = 0; seat < 3; seat++)
+            sheet.add(triple[seat], totals[seat], rounds);
+    }
+
+    // Plays [from, to) in pieces packed longest-processing-time first.
+    private ScoreSheet packed(Game game, CostModel costs, long from, long to, int workers) {
+        int count = (int) (to - from);
+        double[] estimate = costs.estimates();
+        // The estimated cost of each match as float bits above its offset,
+        // so that sorting orders the matches by cost
+        long[] order = new long[count];
+        int[] triple = new int[3];
+        if (count > 0)
+            index.triple(from, triple);
+        for (int offset = 0; offset < count; offset++) {
+            long key = MatchRandom.key(seed, tournament, triple[0], triple[1], triple[2]);
+            float cost = (float) (rounds(key, triple, game.strata() != null)
+                    * (estimate[triple[0]] + estimate[triple[1]] + estimate[triple[2]]));
+            order[offset] = ((long) Float.floatToIntBits(cost) << 32) | offset;
+            index.next(triple);
+        }
+        Arrays.sort(order);
+
+        int pieces = Math.min(count, workers * PIECES_PER_WORKER);
+        double[] load = new double[pieces];
+        int[] pieceOf = new int[count], sizes = new int[pieces];
+        PriorityQueue<Integer> lightest = new PriorityQueue<>(Math.max(1, pieces),
+                (a, b) -> load[a] != load[b] ? Double.compare(load[a], load[b]) : a - b);
+        for (int piece = 0; piece < pieces; piece++)
+            lightest.add(piece);
+        for (int o = count - 1; o >= 0; o--) {
+            int offset = (int) order[o];
+            int piece = lightest.poll();
+            pieceOf[offset] = piece;
+            sizes[piece]++;
+            load[piece] += Float.intBitsToFloat((int) (order[o] >>> 32));
+            lightest.add(piece);
+        }
+        // Each piece's offsets, longest match first
+        int[][] offsets = new int[pieces][];
+        for (int piece = 0; piece < pieces; piece++)
+            offsets[piece] = new int[sizes[piece]];
+        Arrays.fill(sizes, 0);
+        for (int o = count - 1; o >= 0; o--) {
+            int offset = (int) order[o];
+            offsets[pieceOf[offset]][sizes[pieceOf[offset]]++] = offset;
+        }
+
+        Integer[] heaviest = new Integer[pieces];
+        for (int piece = 0; piece < pieces; piece++)
+            heaviest[piece] = piece;
+        Arrays.sort(heaviest, (a, b) -> Double.compare(load[b], load[a]));
+        ForkJoinPool pool = pool(workers);
+        List<ForkJoinTask<ScoreSheet>> tasks = new ArrayList<>();
+        for (int piece : heaviest) {
+            int[] mine = offsets[piece];
+            tasks.add(pool.submit(() -> play(game, from, mine)));
+        }
+        ScoreSheet sheet = new ScoreSheet(players);
+        for (ForkJoinTask<ScoreSheet> task : tasks)
+            sheet.merge(task.join());
+        return sheet;
+    }
+
+    private ScoreSheet play(Game game, long from, int[] offsets) {
+        long start = threads.getCurrentThreadCpuTime();
+        ScoreSheet sheet = new ScoreSheet(players);
+        CostModel costs = game.costs();
+        CostModel.Sample sample = costs.sample();
+        int[] triple = new int[3];
+        for (int offset : offsets) {
+            index.triple(from + offset, triple);
+            play(game, from + offset, triple, sheet, sample);
+        }
+        costs.merge(sample);
+        busy.add(threads.getCurrentThreadCpuTime() - start);
+        return sheet;
+    }
+
+    // The length of the match with the given key between the given triple.
+    private int rounds(long key, int[] triple, boolean stratified) {
+        if (stratified)
+            return MatchRandom.stratifiedRounds(seed, tournament, triple[0], triple[1], triple[2], antithetic);
+        return MatchRandom.rounds(key, antithetic);
+    }
+
+    // The total CPU time spent playing matches so far, over all threads.
+    // Over a stretch of wall-clock time on n workers, the growth of this
+    // divided by n times the stretch is how busy the workers kept the cores.
+    static long busyNanos() {
+        return busy.sum();
+    }
+
+    // One pool is kept for all the tournaments of a run, and is shared with
+    // TournamentSeries.
+    static synchronized ForkJoinPool pool(int workers) {
+        if (pool == null || pool.getParallelism() != workers) {
+            if (pool != null)
+                pool.shutdown();
+            pool = new ForkJoinPool(workers);
+        }
+        return pool;
+    }
+
+    // Plays a range of the triples of a tournament, split in halves down to
+    // the grain.
+    private static final class Piece extends RecursiveTask<ScoreSheet> {
+        private static final long serialVersionUID = 1L;
+
+        private final TournamentTriples triples;
+        private final Game game;
+        private final long from, to, grain;
+
+        Piece(TournamentTriples triples, Game game, long from, long to, long grain) {
+            this.triples = triples;
+            this.game = game;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        protected ScoreSheet compute() {
+            if (to - from <= grain)
+                return triples.play(game, from, to);
+            long middle = (from + to) >>> 1;
+            Piece first = new Piece(triples, game, from, middle, grain);
+            first.fork();
+            ScoreSheet sheet = new Piece(triples, game, middle, to, grain).compute();
+            sheet.merge(first.join());
+            return sheet;
+        }
+    }
+}
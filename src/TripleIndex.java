@@ -0,0 +1,116 @@
+package src;
+
+import java.util.Random;
+
+/*
+ * Numbers the triples i <= j <= k of a tournament between n players densely
+ * from 0 to C(n + 2, 3) - 1, in the order of the nested i, j, k loops that
+ * play them. Since the triples from i onwards are the triples of i..n-1,
+ * of which there are C(n - i + 2, 3), the index of (i, j, k) is
+ *
+ *   C(n + 2, 3) - C(n - i + 2, 3)      triples starting before i
+ *   + C(n - i + 1, 2) - C(n - j + 1, 2)  then with i and a second before j
+ *   + k - j
+ *
+ * and a triple is recovered from its index by finding i and then j by
+ * binary search on those counts. Any contiguous range of indices is a valid
+ * piece of a tournament, so work can be split, resumed or sampled without
+ * listing the triples.
+ */
+final class TripleIndex {
+    private final int players;
+    private final long count;
+
+    // Up to this many players the triple counts fit in a long
+    static final int MAX_PLAYERS = 1 << 20;
+
+    TripleIndex(int players) {
+        if (players < 0 || players > MAX_PLAYERS)
+            throw new IllegalArgumentException("Cannot index triples of " + players + " players");
+        this.players = players;
+        this.count = triples(players);
+    }
+
+    long count() {
+        return count;
+    }
+
+    long index(int i, int j, int k) {
+        return count - triples(players - i) + pairs(players - i) - pairs(players - j) + (k - j);
+    }
+
+    // Stores the triple with the given index in triple[0..2].
+    void triple(long index, int[] triple) {
+        // The largest i with count - triples(n - i) <= index
+        int low = 0, high = players - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (count - triples(players - middle) <= index)
+                low = middle;
+            else
+                high = middle - 1;
+        }
+        int i = low;
+        long rest = index - (count - triples(players - i));
+        // The largest j >= i with pairs(n - i) - pairs(n - j) <= rest
+        low = i;
+        high = players - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (pairs(players - i) - pairs(players - middle) <= rest)
+                low = middle;
+            else
+                high = middle - 1;
+        }
+        int j = low;
+        triple[0] = i;
+        triple[1] = j;
+        triple[2] = (int) (j + rest - (pairs(players - i) - pairs(players - j)));
+    }
+
+    // Moves triple[0..2] on to the next triple in index order, in O(1).
+    // Returns false after the last one.
+    boolean next(int[] triple) {
+        if (++triple[2] < players)
+            return true;
+        if (++triple[1] < players) {
+            triple[2] = triple[1];
+            return true;
+        }
+        if (++triple[0] < players) {
+            triple[1] = triple[2] = triple[0];
+            return true;
+        }
+        return false;
+    }
+
+    // The index of a triple drawn uniformly at random.
+    long sample(Random random) {
+        long bound = count, bits, value;
+        do {
+            bits = random.nextLong() >>> 1;
+            value = bits % bound;
+        } while (bits - value + (bound - 1) < 0);
+        return value;
+    }
+
+    // The bounds of the given number of contiguous ranges of nearly equal
+    // size that cover [from, to): range r is [bounds[r], bounds[r + 1]).
+    static long[] split(long from, long to, int parts) {
+        long[] bounds = new long[parts + 1];
+        long size = to - from;
+        for (int part = 0; part <= parts; part++)
+            bounds[part] = from + size / parts * part + Math.min(part, size % parts);
+        return bounds;
+    }
+
+    // The number of multisets of 3 from m values, C(m + 2, 3)
+    private static long triples(long m) {
+        return m * (m + 1) * (m + 2) / 6;
+    }
+
+    // The number of multisets of 2 from m values, C(m + 1, 2)
+    private static long pairs(long m) {
+        return m * (m + 1) / 2;
+    }
+}